@@ -1,6 +1,7 @@
 package plc.compiler;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -9,6 +10,22 @@ import java.util.Optional;
  */
 public class Ast {
 
+    private int index = -1;
+
+    /**
+     * Returns the offset in the input of the first token of this node (see
+     * {@link Token#getIndex()}), or -1 if the node was not parsed. Positions
+     * are not part of {@code equals}, so equal nodes may come from different
+     * places in the input.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Statement> statements;
@@ -26,6 +43,11 @@ public class Ast {
             return obj instanceof Source && statements.equals(((Source) obj).statements);
         }
 
+        @Override
+        public int hashCode() {
+            return statements.hashCode();
+        }
+
         @Override
         public String toString() {
             return "Source{" +
@@ -54,6 +76,11 @@ public class Ast {
                 return obj instanceof Statement.Expression && expression.equals(((Statement.Expression) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return expression.hashCode();
+            }
+
             @Override
             public String toString() {
                 return "Expression{" +
@@ -95,6 +122,11 @@ public class Ast {
                         value.equals(((Declaration) obj).value);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, type, value);
+            }
+
             @Override
             public String toString() {
                 return "Declaration{" +
@@ -131,6 +163,11 @@ public class Ast {
                         expression.equals(((Assignment) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, expression);
+            }
+
             @Override
             public String toString() {
                 return "Assignment{" +
@@ -173,6 +210,11 @@ public class Ast {
                         elseStatements.equals(((If) obj).elseStatements);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(condition, thenStatements, elseStatements);
+            }
+
             @Override
             public String toString() {
                 return "If{" +
@@ -209,6 +251,11 @@ public class Ast {
                         statements.equals(((While) obj).statements);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(condition, statements);
+            }
+
             @Override
             public String toString() {
                 return "While{" +
@@ -240,6 +287,11 @@ public class Ast {
                 return obj instanceof Literal && value.equals(((Literal) obj).value);
             }
 
+            @Override
+            public int hashCode() {
+                return value.hashCode();
+            }
+
             @Override
             public String toString() {
                 return "Literal{" +
@@ -266,6 +318,11 @@ public class Ast {
                 return obj instanceof Group && expression.equals(((Group) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return expression.hashCode();
+            }
+
             @Override
             public String toString() {
                 return "Group{" +
@@ -307,6 +364,11 @@ public class Ast {
                         right.equals(((Binary) obj).right);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(operator, left, right);
+            }
+
             @Override
             public String toString() {
                 return "Binary{" +
@@ -335,6 +397,11 @@ public class Ast {
                 return obj instanceof Variable && name.equals(((Variable) obj).name);
             }
 
+            @Override
+            public int hashCode() {
+                return name.hashCode();
+            }
+
             @Override
             public String toString() {
                 return "Variable{" +
@@ -369,6 +436,11 @@ public class Ast {
                         arguments.equals(((Function) obj).arguments);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, arguments);
+            }
+
             @Override
             public String toString() {
                 return "Function{" +
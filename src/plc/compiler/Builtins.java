@@ -0,0 +1,41 @@
+package plc.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps language function names to the Java methods the {@link Generator}
+ * calls for them, so builtins can be implemented by optimized static methods
+ * such as those of {@link ScriptRuntime} rather than whatever happens to be
+ * in scope of the generated class.
+ */
+public final class Builtins {
+
+    private final Map<String, String> methods = new HashMap<>();
+
+    /**
+     * Returns a registry of the functions provided by {@link ScriptRuntime}.
+     */
+    public static Builtins standard() {
+        Builtins builtins = new Builtins();
+        builtins.define("PRINT", ScriptRuntime.class.getName() + ".print");
+        return builtins;
+    }
+
+    /**
+     * Registers the fully qualified static method called for a function,
+     * replacing any existing method for that name.
+     */
+    public void define(String name, String method) {
+        methods.put(name, method);
+    }
+
+    /**
+     * Returns the method called for a function, or {@code null} if it is not
+     * a builtin.
+     */
+    public String lookup(String name) {
+        return methods.get(name);
+    }
+
+}
@@ -0,0 +1,130 @@
+package plc.compiler;
+
+import java.util.List;
+
+/**
+ * A program lowered for the {@link VirtualMachine}: an array of int-encoded
+ * instructions, a constant pool, and the number of registers needed.
+ *
+ * Each instruction is an opcode followed by its operands, which are register
+ * numbers ({@code rN}), constant pool indices ({@code kN}) or jump targets
+ * (absolute offsets into the code). Registers below the frame size of the
+ * {@link Resolver} hold variables; the rest hold temporaries.
+ */
+public final class Bytecode {
+
+    /** {@code LOADK rDst, kValue} */
+    public static final int LOADK = 0;
+    /** {@code MOVE rDst, rSrc} */
+    public static final int MOVE = 1;
+    /** {@code CLEAR rDst} marks a variable as uninitialized. */
+    public static final int CLEAR = 2;
+    /** {@code CHECK rSrc, kName} throws if a variable is uninitialized. */
+    public static final int CHECK = 3;
+    /** {@code COERCE rDst, rSrc, kType}, see {@link Values#coerce(String, Object)}. */
+    public static final int COERCE = 4;
+    /** {@code BINARY rDst, rLeft, rRight, kOperator}, see {@link Values#binary(String, Object, Object)}. */
+    public static final int BINARY = 5;
+    /** {@code IADD rDst, rLeft, rRight} on two integers. */
+    public static final int IADD = 6;
+    /** {@code ISUB rDst, rLeft, rRight} on two integers. */
+    public static final int ISUB = 7;
+    /** {@code IMUL rDst, rLeft, rRight} on two integers. */
+    public static final int IMUL = 8;
+    /** {@code IEQ rDst, rLeft, rRight} on two integers. */
+    public static final int IEQ = 9;
+    /** {@code INE rDst, rLeft, rRight} on two integers. */
+    public static final int INE = 10;
+    /** {@code JMP target} */
+    public static final int JMP = 11;
+    /** {@code JMPF rCondition, target} jumps if the condition is false. */
+    public static final int JMPF = 12;
+    /** {@code CALL rDst, kName, rFirstArgument, count} */
+    public static final int CALL = 13;
+    /** {@code HALT} */
+    public static final int HALT = 14;
+
+    private static final String[] NAMES = {
+            "LOADK", "MOVE", "CLEAR", "CHECK", "COERCE", "BINARY", "IADD", "ISUB", "IMUL", "IEQ", "INE",
+            "JMP", "JMPF", "CALL", "HALT"
+    };
+
+    /**
+     * The operand kinds of each opcode: {@code r} register, {@code k}
+     * constant, {@code t} jump target and {@code n} count.
+     */
+    private static final String[] OPERANDS = {
+            "rk", "rr", "r", "rk", "rrk", "rrrk", "rrr", "rrr", "rrr", "rrr", "rrr",
+            "t", "rt", "rkrn", ""
+    };
+
+    private final int[] code;
+    private final Object[] constants;
+    private final int registers;
+
+    public Bytecode(int[] code, Object[] constants, int registers) {
+        this.code = code;
+        this.constants = constants;
+        this.registers = registers;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    public int getRegisters() {
+        return registers;
+    }
+
+    /**
+     * Returns the length of an instruction with the given opcode, including
+     * the opcode itself.
+     */
+    public static int length(int opcode) {
+        return 1 + OPERANDS[opcode].length();
+    }
+
+    /**
+     * Returns a human readable listing of the code, one instruction per line.
+     */
+    public String disassemble() {
+        StringBuilder builder = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += length(code[pc])) {
+            String operands = OPERANDS[code[pc]];
+            builder.append(String.format(operands.isEmpty() ? "%04d %s" : "%04d %-6s", pc, NAMES[code[pc]]));
+            for (int i = 0; i < operands.length(); i++) {
+                int operand = code[pc + 1 + i];
+                builder.append(i == 0 ? " " : ", ");
+                switch (operands.charAt(i)) {
+                    case 'r':
+                        builder.append('r').append(operand);
+                        break;
+                    case 'k':
+                        builder.append('k').append(operand).append(" (").append(describe(constants[operand])).append(')');
+                        break;
+                    default:
+                        builder.append(operand);
+                }
+            }
+            builder.append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    private static String describe(Object constant) {
+        return constant instanceof String ? "\"" + constant + "\"" : String.valueOf(constant);
+    }
+
+    static int[] toArray(List<Integer> code) {
+        int[] array = new int[code.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = code.get(i);
+        }
+        return array;
+    }
+
+}
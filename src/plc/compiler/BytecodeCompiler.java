@@ -0,0 +1,262 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers an AST into {@link Bytecode} for the {@link VirtualMachine}.
+ * Variables live in the registers given by their {@link Resolver} slot, and
+ * each expression is compiled into either a requested target register or a
+ * fresh temporary. Temporaries are released at the end of every statement.
+ *
+ * Integer arithmetic and comparisons whose operand types are known (see
+ * {@link TypeInference}) use dedicated opcodes; everything else goes through
+ * {@link Bytecode#BINARY}.
+ *
+ * Statements visit to {@code null} and expressions to the register holding
+ * their value.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Integer> {
+
+    private final Resolver resolver;
+    private final TypeInference inference;
+    private final List<Integer> code = new ArrayList<>();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final Set<Ast.Statement.Declaration> uninitialized = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int nextRegister;
+    private int registers;
+    private int target = -1;
+
+    private BytecodeCompiler(Resolver resolver) {
+        this.resolver = resolver;
+        this.inference = new TypeInference(resolver, Collections.emptyMap());
+        this.nextRegister = resolver.getFrameSize();
+        this.registers = nextRegister;
+    }
+
+    /**
+     * Compiles the given source.
+     */
+    public static Bytecode compile(Ast.Source source) throws ParseException {
+        BytecodeCompiler compiler = new BytecodeCompiler(Resolver.resolve(source));
+        compiler.visit(source);
+        compiler.emit(Bytecode.HALT);
+        return new Bytecode(Bytecode.toArray(compiler.code), compiler.constants.toArray(), compiler.registers);
+    }
+
+    private void emit(int... instruction) {
+        for (int value : instruction) {
+            code.add(value);
+        }
+    }
+
+    /**
+     * Emits a jump with a placeholder target, returning the offset to patch.
+     */
+    private int jump(int... instruction) {
+        emit(instruction);
+        emit(-1);
+        return code.size() - 1;
+    }
+
+    private void patch(int offset) {
+        code.set(offset, code.size());
+    }
+
+    private int constant(Object value) {
+        return constantIndices.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    private int allocate() {
+        registers = Math.max(registers, nextRegister + 1);
+        return nextRegister++;
+    }
+
+    /**
+     * Compiles an expression into the target register, or any register if
+     * the target is {@code -1}, and returns the register used.
+     */
+    private int compile(Ast.Expression expression, int target) {
+        this.target = target;
+        return visit(expression);
+    }
+
+    /**
+     * Returns the target register requested for the current expression,
+     * allocating a temporary if there is none.
+     */
+    private int destination() {
+        int destination = target >= 0 ? target : allocate();
+        target = -1;
+        return destination;
+    }
+
+    /**
+     * Compiles a value stored into a variable of the given type.
+     */
+    private void store(String type, Ast.Expression value, int register) {
+        if (type.equals(inference.visit(value))) {
+            compile(value, register);
+        } else {
+            int source = compile(value, -1);
+            emit(Bytecode.COERCE, register, source, constant(type));
+        }
+    }
+
+    private void compile(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            int start = nextRegister;
+            visit(statement);
+            nextRegister = start;
+        }
+    }
+
+    @Override
+    public Integer visit(Ast.Source ast) {
+        compile(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Statement.Expression ast) {
+        compile(ast.getExpression(), -1);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Statement.Declaration ast) {
+        int register = resolver.getSlot(ast);
+        if (ast.getValue().isPresent()) {
+            store(ast.getType(), ast.getValue().get(), register);
+        } else {
+            uninitialized.add(ast);
+            emit(Bytecode.CLEAR, register);
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Statement.Assignment ast) {
+        store(resolver.getDeclaration(ast).getType(), ast.getExpression(), resolver.getSlot(ast));
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Statement.If ast) {
+        int temporaries = nextRegister;
+        int condition = compile(ast.getCondition(), -1);
+        int elseJump = jump(Bytecode.JMPF, condition);
+        nextRegister = temporaries;
+        compile(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            patch(elseJump);
+        } else {
+            int endJump = jump(Bytecode.JMP);
+            patch(elseJump);
+            compile(ast.getElseStatements());
+            patch(endJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Statement.While ast) {
+        int start = code.size();
+        int temporaries = nextRegister;
+        int condition = compile(ast.getCondition(), -1);
+        int endJump = jump(Bytecode.JMPF, condition);
+        nextRegister = temporaries;
+        compile(ast.getStatements());
+        emit(Bytecode.JMP, start);
+        patch(endJump);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Expression.Literal ast) {
+        int destination = destination();
+        emit(Bytecode.LOADK, destination, constant(ast.getValue()));
+        return destination;
+    }
+
+    @Override
+    public Integer visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Integer visit(Ast.Expression.Binary ast) {
+        int destination = target;
+        int left = compile(ast.getLeft(), -1);
+        int right = compile(ast.getRight(), -1);
+        target = destination;
+        destination = destination();
+        int opcode = Bytecode.BINARY;
+        if ("INTEGER".equals(inference.visit(ast.getLeft())) && "INTEGER".equals(inference.visit(ast.getRight()))) {
+            switch (ast.getOperator()) {
+                case "+":
+                    opcode = Bytecode.IADD;
+                    break;
+                case "-":
+                    opcode = Bytecode.ISUB;
+                    break;
+                case "*":
+                    opcode = Bytecode.IMUL;
+                    break;
+                case "==":
+                    opcode = Bytecode.IEQ;
+                    break;
+                case "!=":
+                    opcode = Bytecode.INE;
+                    break;
+            }
+        }
+        if (opcode == Bytecode.BINARY) {
+            emit(opcode, destination, left, right, constant(ast.getOperator()));
+        } else {
+            emit(opcode, destination, left, right);
+        }
+        return destination;
+    }
+
+    @Override
+    public Integer visit(Ast.Expression.Variable ast) {
+        int register = resolver.getSlot(ast);
+        if (uninitialized.contains(resolver.getDeclaration(ast))) {
+            emit(Bytecode.CHECK, register, constant(ast.getName()));
+        }
+        if (target >= 0 && target != register) {
+            emit(Bytecode.MOVE, target, register);
+            register = target;
+        }
+        target = -1;
+        return register;
+    }
+
+    @Override
+    public Integer visit(Ast.Expression.Function ast) {
+        int destination = target;
+        int count = ast.getArguments().size();
+        int first = nextRegister;
+        for (int i = 0; i < count; i++) {
+            allocate();
+        }
+        for (int i = 0; i < count; i++) {
+            compile(ast.getArguments().get(i), first + i);
+        }
+        target = destination;
+        destination = destination();
+        emit(Bytecode.CALL, destination, constant(ast.getName()), first, count);
+        return destination;
+    }
+
+}
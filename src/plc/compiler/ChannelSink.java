@@ -0,0 +1,201 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A sink that encodes generated source as UTF-8 straight into a direct
+ * {@link ByteBuffer} and writes it to a channel, such as a
+ * {@link java.nio.channels.FileChannel}, whenever the buffer fills. This
+ * avoids the copies between writer, encoder and stream buffers of a
+ * {@link java.io.PrintWriter}, which matter for tens of megabytes of output.
+ *
+ * Generated Java is almost entirely ASCII, which is copied byte for byte;
+ * only strings containing other characters go through an encoder. A
+ * surrogate pair may be split across appends, as with the other sinks. The
+ * buffer may be reused for several outputs with {@link #reset}, and
+ * {@link #flush()} must be called at the end.
+ */
+public final class ChannelSink extends Sink {
+
+    /**
+     * The default buffer size, large enough that each channel write is
+     * cheap relative to the data written.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * The smallest buffer, which holds the longest {@code long} written by
+     * {@link #append(long)}.
+     */
+    private static final int MIN_CAPACITY = 20;
+
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private WritableByteChannel channel;
+
+    /**
+     * A high surrogate waiting for the low surrogate of its pair, or 0.
+     */
+    private char high;
+
+    public ChannelSink(WritableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    public ChannelSink(WritableByteChannel channel, int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(Math.max(capacity, MIN_CAPACITY));
+        this.channel = channel;
+    }
+
+    /**
+     * Flushes any pending output, then writes to another channel.
+     */
+    public void reset(WritableByteChannel channel) {
+        flush();
+        this.channel = channel;
+    }
+
+    @Override
+    public ChannelSink append(char c) {
+        if (high != 0) {
+            char pending = high;
+            high = 0;
+            encode(CharBuffer.wrap(new char[] {pending, c}));
+        } else if (c < 0x80) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) c);
+        } else if (Character.isHighSurrogate(c)) {
+            high = c;
+        } else {
+            encode(CharBuffer.wrap(new char[] {c}));
+        }
+        return this;
+    }
+
+    @Override
+    public ChannelSink append(String string) {
+        int length = string.length();
+        int start = 0;
+        if (high != 0 && length > 0) {
+            append(string.charAt(start++));
+        }
+        for (int i = start; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                encode(CharBuffer.wrap(string, i, length));
+                return this;
+            }
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    @Override
+    public ChannelSink append(char[] chars, int offset, int length) {
+        int end = offset + length;
+        if (high != 0 && offset < end) {
+            append(chars[offset++]);
+        }
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+            if (c >= 0x80) {
+                encode(CharBuffer.wrap(chars, i, end - i));
+                return this;
+            }
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes the digits of a value directly into the buffer.
+     */
+    @Override
+    public ChannelSink append(long value) {
+        if (value == Long.MIN_VALUE || high != 0) {
+            return append(Long.toString(value));
+        }
+        if (buffer.remaining() < 20) {
+            drain();
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = buffer.position();
+        int end = start + digits(value);
+        for (int i = end - 1; i >= start; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+        return this;
+    }
+
+    /**
+     * Encodes the remaining characters, keeping a trailing high surrogate
+     * until its pair is completed by the next append.
+     */
+    private void encode(CharBuffer chars) {
+        if (chars.remaining() > 0 && Character.isHighSurrogate(chars.get(chars.limit() - 1))) {
+            high = chars.get(chars.limit() - 1);
+            chars.limit(chars.limit() - 1);
+        }
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                throw new IllegalArgumentException("Cannot encode generated source: " + result);
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel and empties it.
+     */
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() {
+        if (high != 0) {
+            high = 0;
+            throw new IllegalArgumentException("Cannot encode generated source: unpaired surrogate");
+        }
+        if (buffer.position() > 0) {
+            drain();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ChannelSinkTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "LET i : INTEGER = 0;",
+            "WHILE i != 10 DO",
+            "    PRINT(\"caf\u00e9 \u20ac \ud83d\ude00\", i * 1234567);",
+            "    i = i + 1;",
+            "END"
+    );
+
+    @Test
+    void testSmallBuffer() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(PROGRAM));
+        CharSink expected = new CharSink();
+        new Generator(expected).visit(source);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelSink sink = new ChannelSink(Channels.newChannel(bytes), 16);
+        new Generator(sink).visit(source);
+        sink.append(Long.MIN_VALUE).append(' ').append(-42L).append(' ').append(-1234567890123456789L);
+        sink.flush();
+        Assertions.assertEquals(expected + "-9223372036854775808 -42 -1234567890123456789",
+                new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSplitSurrogates() {
+        String text = "a\ud83d\ude00b\u00e9\ud83d\ude01";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelSink sink = new ChannelSink(Channels.newChannel(bytes), 16);
+        for (int i = 0; i < text.length(); i++) {
+            sink.append(text.charAt(i));
+        }
+        sink.append("x\ud83d").append("\ude02y").append(new char[] {'\ud83d'}, 0, 1).append(new char[] {'\ude03'}, 0, 1);
+        sink.flush();
+        Assertions.assertEquals(text + "x\ud83d\ude02y\ud83d\ude03", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        sink.append('\ud83d');
+        Assertions.assertThrows(IllegalArgumentException.class, sink::flush);
+    }
+
+    @Test
+    void testFileChannel(@TempDir Path directory) throws IOException {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(PROGRAM));
+        CharSink expected = new CharSink();
+        new Generator(expected).visit(source);
+        Path path = directory.resolve("Main.java");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ChannelSink sink = new ChannelSink(channel);
+            new Generator(sink).visit(source);
+            sink.flush();
+        }
+        Assertions.assertEquals(expected.toString(), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,139 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A sink that collects output in a growable char array. It is not
+ * synchronized; each generator should have its own.
+ */
+public final class CharSink extends Sink implements CharSequence {
+
+    private char[] buffer;
+    private int length = 0;
+
+    public CharSink() {
+        this(8192);
+    }
+
+    public CharSink(int capacity) {
+        buffer = new char[Math.max(capacity, 16)];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+        }
+    }
+
+    @Override
+    public CharSink append(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    @Override
+    public CharSink append(String string) {
+        int size = string.length();
+        ensureCapacity(length + size);
+        string.getChars(0, size, buffer, length);
+        length += size;
+        return this;
+    }
+
+    @Override
+    public CharSink append(char[] chars, int offset, int length) {
+        ensureCapacity(this.length + length);
+        System.arraycopy(chars, offset, buffer, this.length, length);
+        this.length += length;
+        return this;
+    }
+
+    /**
+     * Appends the digits of a value directly into the buffer.
+     */
+    @Override
+    public CharSink append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        ensureCapacity(length + 20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int end = length + digits(value);
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+        return this;
+    }
+
+    /**
+     * Appends the contents of another sink.
+     */
+    public CharSink append(CharSink other) {
+        return append(other.buffer, 0, other.length);
+    }
+
+    /**
+     * Appends the characters of another sink from start to end.
+     */
+    public CharSink append(CharSink other, int start, int end) {
+        return append(other.buffer, start, end - start);
+    }
+
+    /**
+     * Writes the contents to a sink.
+     */
+    public void writeTo(Sink sink) {
+        sink.append(buffer, 0, length);
+    }
+
+    /**
+     * Writes the contents to a writer.
+     */
+    public void writeTo(Writer writer) {
+        try {
+            writer.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity for reuse.
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return buffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+}
@@ -0,0 +1,260 @@
+package plc.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compiles an AST into a tree of closures that can be executed many times.
+ * Unlike the {@link Interpreter}, all dispatch on node types, variable lookup
+ * and operator selection happens once at compile time: variables are read
+ * from frame slots assigned by the {@link Resolver}, and binary operators
+ * whose operand types are known (see {@link TypeInference}) get a closure
+ * specialized for those types, such as adding two {@link BigInteger}s
+ * directly. Each closure class then only ever sees one kind of operand,
+ * which keeps its call sites monomorphic for the JIT.
+ *
+ * The semantics are the same as the interpreter's, see {@link Values}.
+ */
+public final class ClosureCompiler implements Ast.Visitor<Object> {
+
+    @FunctionalInterface
+    public interface Statement {
+        void execute(Object[] frame);
+    }
+
+    @FunctionalInterface
+    public interface Expression {
+        Object evaluate(Object[] frame);
+    }
+
+    /**
+     * A compiled program, which may be run any number of times.
+     */
+    public static final class Program {
+
+        private final Statement body;
+        private final int frameSize;
+
+        private Program(Statement body, int frameSize) {
+            this.body = body;
+            this.frameSize = frameSize;
+        }
+
+        public void run() {
+            body.execute(new Object[frameSize]);
+        }
+
+    }
+
+    private final Resolver resolver;
+    private final Functions functions;
+    private final TypeInference inference;
+
+    private ClosureCompiler(Resolver resolver, Functions functions) {
+        this.resolver = resolver;
+        this.functions = functions;
+        this.inference = new TypeInference(resolver, Collections.emptyMap());
+    }
+
+    /**
+     * Compiles the given source, calling functions from the given registry.
+     */
+    public static Program compile(Ast.Source source, Functions functions) throws ParseException {
+        Resolver resolver = Resolver.resolve(source);
+        Statement body = (Statement) new ClosureCompiler(resolver, functions).visit(source);
+        return new Program(body, resolver.getFrameSize());
+    }
+
+    private Statement compile(Ast.Statement statement) {
+        return (Statement) visit(statement);
+    }
+
+    private Expression compile(Ast.Expression expression) {
+        return (Expression) visit(expression);
+    }
+
+    private Statement block(List<Ast.Statement> statements) {
+        Statement[] compiled = new Statement[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(statements.get(i));
+        }
+        switch (compiled.length) {
+            case 0:
+                return frame -> {};
+            case 1:
+                return compiled[0];
+            default:
+                return frame -> {
+                    for (Statement statement : compiled) {
+                        statement.execute(frame);
+                    }
+                };
+        }
+    }
+
+    /**
+     * Compiles a condition, skipping the runtime check if it is known to be a
+     * boolean.
+     */
+    private Expression condition(Ast.Expression condition) {
+        Expression compiled = compile(condition);
+        if ("BOOLEAN".equals(inference.visit(condition))) {
+            return compiled;
+        }
+        return frame -> Values.requireBoolean(compiled.evaluate(frame));
+    }
+
+    /**
+     * Compiles the value stored into a variable of the given type, skipping
+     * the coercion if the value is known to have that type already.
+     */
+    private Expression store(String type, Ast.Expression value) {
+        Expression compiled = compile(value);
+        if (type.equals(inference.visit(value))) {
+            return compiled;
+        }
+        return frame -> Values.coerce(type, compiled.evaluate(frame));
+    }
+
+    @Override
+    public Object visit(Ast.Source ast) {
+        return block(ast.getStatements());
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Expression ast) {
+        Expression expression = compile(ast.getExpression());
+        return (Statement) expression::evaluate;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Declaration ast) {
+        int slot = resolver.getSlot(ast);
+        if (!ast.getValue().isPresent()) {
+            return (Statement) frame -> frame[slot] = null;
+        }
+        Expression value = store(ast.getType(), ast.getValue().get());
+        return (Statement) frame -> frame[slot] = value.evaluate(frame);
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Assignment ast) {
+        int slot = resolver.getSlot(ast);
+        Expression value = store(resolver.getDeclaration(ast).getType(), ast.getExpression());
+        return (Statement) frame -> frame[slot] = value.evaluate(frame);
+    }
+
+    @Override
+    public Object visit(Ast.Statement.If ast) {
+        Expression condition = condition(ast.getCondition());
+        Statement thenStatements = block(ast.getThenStatements());
+        Statement elseStatements = block(ast.getElseStatements());
+        return (Statement) frame -> {
+            if ((Boolean) condition.evaluate(frame)) {
+                thenStatements.execute(frame);
+            } else {
+                elseStatements.execute(frame);
+            }
+        };
+    }
+
+    @Override
+    public Object visit(Ast.Statement.While ast) {
+        Expression condition = condition(ast.getCondition());
+        Statement body = block(ast.getStatements());
+        return (Statement) frame -> {
+            while ((Boolean) condition.evaluate(frame)) {
+                body.execute(frame);
+            }
+        };
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Literal ast) {
+        Object value = ast.getValue();
+        return (Expression) frame -> value;
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Group ast) {
+        return compile(ast.getExpression());
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Binary ast) {
+        Expression left = compile(ast.getLeft());
+        Expression right = compile(ast.getRight());
+        String leftType = inference.visit(ast.getLeft());
+        String rightType = inference.visit(ast.getRight());
+        String operator = ast.getOperator();
+        if ("INTEGER".equals(leftType) && "INTEGER".equals(rightType)) {
+            switch (operator) {
+                case "+":
+                    return (Expression) frame -> ((BigInteger) left.evaluate(frame)).add((BigInteger) right.evaluate(frame));
+                case "-":
+                    return (Expression) frame -> ((BigInteger) left.evaluate(frame)).subtract((BigInteger) right.evaluate(frame));
+                case "*":
+                    return (Expression) frame -> ((BigInteger) left.evaluate(frame)).multiply((BigInteger) right.evaluate(frame));
+                case "/":
+                    return (Expression) frame -> Values.integer("/", (BigInteger) left.evaluate(frame), (BigInteger) right.evaluate(frame));
+                case "==":
+                    return (Expression) frame -> left.evaluate(frame).equals(right.evaluate(frame));
+                case "!=":
+                    return (Expression) frame -> !left.evaluate(frame).equals(right.evaluate(frame));
+            }
+        } else if ("DECIMAL".equals(leftType) && "DECIMAL".equals(rightType)) {
+            switch (operator) {
+                case "+":
+                    return (Expression) frame -> ((BigDecimal) left.evaluate(frame)).add((BigDecimal) right.evaluate(frame));
+                case "-":
+                    return (Expression) frame -> ((BigDecimal) left.evaluate(frame)).subtract((BigDecimal) right.evaluate(frame));
+                case "*":
+                    return (Expression) frame -> ((BigDecimal) left.evaluate(frame)).multiply((BigDecimal) right.evaluate(frame));
+            }
+        } else if ("STRING".equals(leftType) && "STRING".equals(rightType) && operator.equals("+")) {
+            return (Expression) frame -> ((String) left.evaluate(frame)).concat((String) right.evaluate(frame));
+        }
+        return (Expression) frame -> Values.binary(operator, left.evaluate(frame), right.evaluate(frame));
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Variable ast) {
+        int slot = resolver.getSlot(ast);
+        String name = ast.getName();
+        return (Expression) frame -> {
+            Object value = frame[slot];
+            if (value == null) {
+                throw new EvaluationException("Variable " + name + " is not initialized.");
+            }
+            return value;
+        };
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Function ast) {
+        Expression[] arguments = new Expression[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compile(ast.getArguments().get(i));
+        }
+        Function<List<Object>, Object> function;
+        try {
+            function = functions.lookup(ast.getName());
+        } catch (EvaluationException e) {
+            return (Expression) frame -> {
+                throw e;
+            };
+        }
+        return (Expression) frame -> {
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (Expression argument : arguments) {
+                values.add(argument.evaluate(frame));
+            }
+            return function.apply(values);
+        };
+    }
+
+}
@@ -0,0 +1,83 @@
+package plc.compiler;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+/**
+ * Checks that compiled programs behave exactly like the {@link Interpreter}.
+ */
+public class ClosureCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testProgram(String name, String input) {
+        StringWriter expected = new StringWriter();
+        PrintWriter expectedOut = new PrintWriter(expected);
+        new Interpreter(expectedOut).visit(Parser.parse(Lexer.lex(input)));
+        expectedOut.flush();
+        Assertions.assertEquals(expected.toString(), run(input));
+    }
+
+    private static Stream<Arguments> testProgram() {
+        return Stream.of(
+                Arguments.of("Print", "PRINT(\"Hello, World!\");"),
+                Arguments.of("Arithmetic", String.join("\n",
+                        "LET x : INTEGER = 7 / 2;",
+                        "LET y : DECIMAL = 1.00 / 4;",
+                        "LET z : DECIMAL = y * 3 + x;",
+                        "PRINT(x, y, z, \"x=\" + x, x == 3.0, y != 0.25);"
+                )),
+                Arguments.of("Loop", String.join("\n",
+                        "LET i : INTEGER = 0;",
+                        "LET sum : INTEGER = 0;",
+                        "WHILE i != 100 DO",
+                        "    LET square : INTEGER = i * i;",
+                        "    IF (i / 2) * 2 == i THEN",
+                        "        sum = sum + square;",
+                        "    ELSE",
+                        "        sum = sum - i;",
+                        "    END",
+                        "    i = i + 1;",
+                        "END",
+                        "PRINT(sum);"
+                ))
+        );
+    }
+
+    @Test
+    void testRepeatedRuns() {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        ClosureCompiler.Program program = ClosureCompiler.compile(
+                (Ast.Source) Parser.parse(Lexer.lex("LET x : INTEGER = 1; x = x + 1; PRINT(x);")), new Functions(out));
+        program.run();
+        program.run();
+        out.flush();
+        Assertions.assertEquals("2" + System.lineSeparator() + "2" + System.lineSeparator(), writer.toString());
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(ParseException.class, () -> run("PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("UNKNOWN();"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("LET x : INTEGER; PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("PRINT(1 / 0);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("IF \"yes\" THEN END"));
+    }
+
+    private static String run(String input) {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        ClosureCompiler.compile((Ast.Source) Parser.parse(Lexer.lex(input)), new Functions(out)).run();
+        out.flush();
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,301 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Evaluates repeated expressions once. Within each statement list, a pure
+ * expression (see {@link Purity}) is available from its first evaluation
+ * until a statement assigns or declares one of the variables it reads;
+ * {@code IF} and {@code WHILE} statements kill every variable their bodies
+ * assign. When an expression is evaluated more than once while available, a
+ * temporary holding its value is declared before the statement containing
+ * the first occurrence and every occurrence is replaced by the temporary.
+ *
+ * {@code WHILE} conditions are evaluated on every iteration and so are never
+ * part of a group. As with {@link LoopInvariantCodeMotion}, expressions that
+ * may throw or whose type is unknown are left alone.
+ */
+public final class CommonSubexpressionElimination extends ScopedTransformer {
+
+    private final Map<String, String> pureFunctions;
+    private final Purity purity;
+    private FreshNames names;
+
+    /**
+     * Creates the pass with the given pure functions, mapped to their result
+     * types. All other functions are considered impure.
+     */
+    public CommonSubexpressionElimination(Map<String, String> pureFunctions) {
+        this.pureFunctions = pureFunctions;
+        this.purity = new Purity(pureFunctions.keySet());
+    }
+
+    /**
+     * Eliminates common subexpressions in the given source, treating every
+     * function call as impure.
+     */
+    public static Ast.Source eliminate(Ast.Source source) {
+        return (Ast.Source) new CommonSubexpressionElimination(Collections.emptyMap()).visit(source);
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        names = new FreshNames(ast);
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Statement> visitStatements(List<Ast.Statement> statements) {
+        Map<String, String> types = types();
+        List<Ast.Statement> block = super.visitStatements(statements);
+        return new Block(block, types).eliminate();
+    }
+
+    /**
+     * A set of occurrences of the same expression while it is available.
+     */
+    private static final class Group {
+
+        private final Ast.Expression expression;
+        private final Set<String> reads;
+        private final String type;
+        private final int first;
+        private int count = 0;
+        private int uses = 0;
+        private String name;
+
+        private Group(Ast.Expression expression, String type, int first) {
+            this.expression = expression;
+            this.reads = Variables.of(expression).getReads();
+            this.type = type;
+            this.first = first;
+        }
+
+    }
+
+    /**
+     * Eliminates common subexpressions within a single statement list.
+     */
+    private final class Block {
+
+        private final List<Ast.Statement> statements;
+        private final Map<String, String> types;
+        private final TypeInference inference;
+        private final List<Map<Ast.Expression, Group>> available = new ArrayList<>();
+        private final List<Group> groups = new ArrayList<>();
+
+        private Block(List<Ast.Statement> statements, Map<String, String> types) {
+            this.statements = statements;
+            this.types = types;
+            this.inference = new TypeInference(types, pureFunctions);
+        }
+
+        private List<Ast.Statement> eliminate() {
+            Map<Ast.Expression, Group> open = new HashMap<>();
+            for (int i = 0; i < statements.size(); i++) {
+                Map<Ast.Expression, Group> here = new HashMap<>();
+                available.add(here);
+                for (Ast.Expression expression : evaluated(statements.get(i))) {
+                    count(expression, i, open, here);
+                }
+                Set<String> kills = kills(statements.get(i));
+                open.values().removeIf(group -> !Collections.disjoint(group.reads, kills));
+            }
+            for (int i = 0; i < statements.size(); i++) {
+                for (Ast.Expression expression : evaluated(statements.get(i))) {
+                    use(expression, available.get(i));
+                }
+            }
+            List<Group> selected = new ArrayList<>();
+            for (Group group : groups) {
+                if (group.uses >= 2) {
+                    selected.add(group);
+                }
+            }
+            if (selected.isEmpty()) {
+                return statements;
+            }
+            selected.sort(Comparator.<Group>comparingInt(group -> group.first)
+                    .thenComparingInt(group -> size(group.expression)));
+            for (Group group : selected) {
+                group.name = names.next("cse");
+            }
+            List<Ast.Statement> result = new ArrayList<>();
+            int next = 0;
+            for (int i = 0; i < statements.size(); i++) {
+                Replacer replacer = new Replacer(available.get(i));
+                for (; next < selected.size() && selected.get(next).first == i; next++) {
+                    Group group = selected.get(next);
+                    Ast.Expression value = replacer.visitChildren(group.expression);
+                    result.add(new Ast.Statement.Declaration(group.name, group.type, Optional.of(value)));
+                }
+                result.add(replacer.rewrite(statements.get(i)));
+            }
+            return result;
+        }
+
+        /**
+         * Counts every candidate subexpression of an expression evaluated by
+         * statement {@code index}.
+         */
+        private void count(Ast.Expression expression, int index, Map<Ast.Expression, Group> open,
+                           Map<Ast.Expression, Group> here) {
+            if (isCandidate(expression)) {
+                Group group = open.get(expression);
+                if (group == null) {
+                    group = new Group(expression, inference.visit(expression), index);
+                    open.put(expression, group);
+                    groups.add(group);
+                }
+                group.count++;
+                here.put(expression, group);
+            }
+            for (Ast.Expression child : children(expression)) {
+                count(child, index, open, here);
+            }
+        }
+
+        /**
+         * Counts the occurrences that would actually be replaced, which
+         * excludes occurrences nested inside a larger repeated expression.
+         */
+        private void use(Ast.Expression expression, Map<Ast.Expression, Group> here) {
+            Group group = here.get(expression);
+            if (group != null && group.count >= 2) {
+                group.uses++;
+                return;
+            }
+            for (Ast.Expression child : children(expression)) {
+                use(child, here);
+            }
+        }
+
+        private boolean isCandidate(Ast.Expression expression) {
+            if (expression instanceof Ast.Expression.Literal || expression instanceof Ast.Expression.Variable
+                    || expression instanceof Ast.Expression.Group) {
+                return false;
+            }
+            return purity.visit(expression)
+                    && !Purity.mayThrow(expression)
+                    && inference.visit(expression) != null;
+        }
+
+        /**
+         * Returns the variables whose value changes after the statement, and
+         * records the type of any variable it declares.
+         */
+        private Set<String> kills(Ast.Statement statement) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statement;
+                types.put(declaration.getName(), declaration.getType());
+                return Collections.singleton(declaration.getName());
+            } else if (statement instanceof Ast.Statement.Assignment) {
+                return Collections.singleton(((Ast.Statement.Assignment) statement).getName());
+            } else if (statement instanceof Ast.Statement.If || statement instanceof Ast.Statement.While) {
+                return Variables.of(statement).getWrites();
+            }
+            return Collections.emptySet();
+        }
+
+    }
+
+    /**
+     * Replaces occurrences of selected groups available at one statement.
+     */
+    private static final class Replacer extends Transformer {
+
+        private final Map<Ast.Expression, Group> here;
+
+        private Replacer(Map<Ast.Expression, Group> here) {
+            this.here = here;
+        }
+
+        @Override
+        protected Ast.Expression visitExpression(Ast.Expression expression) {
+            Group group = here.get(expression);
+            if (group != null && group.name != null) {
+                return new Ast.Expression.Variable(group.name);
+            }
+            return super.visitExpression(expression);
+        }
+
+        /**
+         * Rewrites the children of an expression but not the expression
+         * itself, for the value of its own temporary.
+         */
+        private Ast.Expression visitChildren(Ast.Expression expression) {
+            return (Ast.Expression) visit(expression);
+        }
+
+        /**
+         * Rewrites the expressions a statement evaluates directly, leaving any
+         * nested statements untouched.
+         */
+        private Ast.Statement rewrite(Ast.Statement statement) {
+            if (statement instanceof Ast.Statement.Expression) {
+                return new Ast.Statement.Expression(visitExpression(((Ast.Statement.Expression) statement).getExpression()));
+            } else if (statement instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statement;
+                return new Ast.Statement.Declaration(declaration.getName(), declaration.getType(),
+                        declaration.getValue().map(this::visitExpression));
+            } else if (statement instanceof Ast.Statement.Assignment) {
+                Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) statement;
+                return new Ast.Statement.Assignment(assignment.getName(), visitExpression(assignment.getExpression()));
+            } else if (statement instanceof Ast.Statement.If) {
+                Ast.Statement.If ast = (Ast.Statement.If) statement;
+                return new Ast.Statement.If(visitExpression(ast.getCondition()),
+                        ast.getThenStatements(), ast.getElseStatements());
+            }
+            return statement;
+        }
+
+    }
+
+    /**
+     * Returns the expressions evaluated directly by a statement, in order.
+     */
+    private static List<Ast.Expression> evaluated(Ast.Statement statement) {
+        if (statement instanceof Ast.Statement.Expression) {
+            return Collections.singletonList(((Ast.Statement.Expression) statement).getExpression());
+        } else if (statement instanceof Ast.Statement.Declaration) {
+            Optional<Ast.Expression> value = ((Ast.Statement.Declaration) statement).getValue();
+            return value.isPresent() ? Collections.singletonList(value.get()) : Collections.emptyList();
+        } else if (statement instanceof Ast.Statement.Assignment) {
+            return Collections.singletonList(((Ast.Statement.Assignment) statement).getExpression());
+        } else if (statement instanceof Ast.Statement.If) {
+            return Collections.singletonList(((Ast.Statement.If) statement).getCondition());
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<Ast.Expression> children(Ast.Expression expression) {
+        if (expression instanceof Ast.Expression.Group) {
+            return Collections.singletonList(((Ast.Expression.Group) expression).getExpression());
+        } else if (expression instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) expression;
+            List<Ast.Expression> children = new ArrayList<>();
+            children.add(binary.getLeft());
+            children.add(binary.getRight());
+            return children;
+        } else if (expression instanceof Ast.Expression.Function) {
+            return ((Ast.Expression.Function) expression).getArguments();
+        }
+        return Collections.emptyList();
+    }
+
+    private static int size(Ast.Expression expression) {
+        int size = 1;
+        for (Ast.Expression child : children(expression)) {
+            size += size(child);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,109 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class CommonSubexpressionEliminationTests {
+
+    @Test
+    void testRepeated() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                declare("total", "INTEGER", Optional.of(product())),
+                new Ast.Statement.If(new Ast.Expression.Binary("==", product(), new Ast.Expression.Literal(BigInteger.TEN)),
+                        Arrays.asList(print(product())),
+                        Arrays.asList()
+                )
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                declare("$cse0", "INTEGER", Optional.of(product())),
+                declare("total", "INTEGER", Optional.of(new Ast.Expression.Variable("$cse0"))),
+                new Ast.Statement.If(new Ast.Expression.Binary("==",
+                                new Ast.Expression.Variable("$cse0"),
+                                new Ast.Expression.Literal(BigInteger.TEN)
+                        ),
+                        Arrays.asList(print(product())),
+                        Arrays.asList()
+                )
+        ));
+        Assertions.assertEquals(expected, CommonSubexpressionElimination.eliminate(ast));
+    }
+
+    @Test
+    void testKilled() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                print(product()),
+                new Ast.Statement.Assignment("price", new Ast.Expression.Literal(BigInteger.ONE)),
+                print(product())
+        ));
+        Assertions.assertEquals(ast, CommonSubexpressionElimination.eliminate(ast));
+    }
+
+    @Test
+    void testKilledByLoop() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                print(product()),
+                new Ast.Statement.While(new Ast.Expression.Variable("running"), Arrays.asList(
+                        new Ast.Statement.Assignment("quantity", new Ast.Expression.Literal(BigInteger.ONE))
+                )),
+                print(product())
+        ));
+        Assertions.assertEquals(ast, CommonSubexpressionElimination.eliminate(ast));
+    }
+
+    @Test
+    void testNested() {
+        Ast.Expression sum = new Ast.Expression.Binary("+", product(), new Ast.Expression.Variable("tax"));
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                declare("tax", "INTEGER", Optional.empty()),
+                print(sum),
+                print(sum),
+                print(product()),
+                print(product())
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("price", "INTEGER", Optional.empty()),
+                declare("quantity", "INTEGER", Optional.empty()),
+                declare("tax", "INTEGER", Optional.empty()),
+                declare("$cse0", "INTEGER", Optional.of(product())),
+                declare("$cse1", "INTEGER", Optional.of(new Ast.Expression.Binary("+",
+                        new Ast.Expression.Variable("$cse0"),
+                        new Ast.Expression.Variable("tax")
+                ))),
+                print(new Ast.Expression.Variable("$cse1")),
+                print(new Ast.Expression.Variable("$cse1")),
+                print(new Ast.Expression.Variable("$cse0")),
+                print(new Ast.Expression.Variable("$cse0"))
+        ));
+        Assertions.assertEquals(expected, CommonSubexpressionElimination.eliminate(ast));
+    }
+
+    private static Ast.Expression product() {
+        return new Ast.Expression.Binary("*",
+                new Ast.Expression.Variable("price"),
+                new Ast.Expression.Variable("quantity")
+        );
+    }
+
+    private static Ast.Statement declare(String name, String type, Optional<Ast.Expression> value) {
+        return new Ast.Statement.Declaration(name, type, value);
+    }
+
+    private static Ast.Statement print(Ast.Expression expression) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(expression)));
+    }
+
+}
@@ -0,0 +1,32 @@
+package plc.compiler;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when javac rejects generated source, which is a bug in the
+ * {@link Generator} rather than in the script. The message lists the errors
+ * by file and line, and the diagnostics themselves are kept for callers that
+ * map them back to the script (see {@link SourceMap}).
+ */
+public final class CompilationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+    public CompilationException(String message, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        super(message);
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * Returns the error diagnostics reported by javac.
+     */
+    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+        return diagnostics;
+    }
+
+}
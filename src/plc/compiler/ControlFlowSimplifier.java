@@ -0,0 +1,78 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes control flow whose outcome is known at compile time:
+ *
+ *  - {@code IF TRUE} and {@code IF FALSE} are replaced with the live branch
+ *  - {@code WHILE FALSE} loops are dropped entirely
+ *  - {@code IF} statements with two empty branches are dropped when the
+ *    condition has no side effects (see {@link Purity})
+ *
+ * A live branch is only spliced into the enclosing block when it declares no
+ * variables of its own; otherwise the branch is kept as {@code IF TRUE} so the
+ * declarations stay in their original scope.
+ */
+public final class ControlFlowSimplifier extends Transformer {
+
+    /**
+     * Simplifies the given source, returning a new AST.
+     */
+    public static Ast.Source simplify(Ast.Source source) {
+        return (Ast.Source) new ControlFlowSimplifier().visit(source);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = visitExpression(ast.getCondition());
+        List<Ast.Statement> thenStatements = visitStatements(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = visitStatements(ast.getElseStatements());
+        Boolean constant = constantCondition(condition);
+        if (constant != null) {
+            return block(constant ? thenStatements : elseStatements);
+        } else if (thenStatements.isEmpty() && elseStatements.isEmpty() && Purity.isPure(condition)) {
+            return null;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = visitExpression(ast.getCondition());
+        if (Boolean.FALSE.equals(constantCondition(condition))) {
+            return null;
+        }
+        return new Ast.Statement.While(condition, visitStatements(ast.getStatements()));
+    }
+
+    /**
+     * Returns the statements of a live branch in a form that can replace the
+     * original {@code IF}, keeping a scope around it if it has declarations.
+     */
+    private static Ast block(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                return new Ast.Statement.If(new Ast.Expression.Literal(true), statements, new ArrayList<>());
+            }
+        }
+        return new Ast.Source(statements);
+    }
+
+    /**
+     * Returns the value of a literal boolean condition (including through
+     * groups), or {@code null} if the condition is not constant.
+     */
+    private static Boolean constantCondition(Ast.Expression condition) {
+        while (condition instanceof Ast.Expression.Group) {
+            condition = ((Ast.Expression.Group) condition).getExpression();
+        }
+        if (condition instanceof Ast.Expression.Literal
+                && ((Ast.Expression.Literal) condition).getValue() instanceof Boolean) {
+            return (Boolean) ((Ast.Expression.Literal) condition).getValue();
+        }
+        return null;
+    }
+
+}
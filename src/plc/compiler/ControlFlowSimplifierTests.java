@@ -0,0 +1,111 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class ControlFlowSimplifierTests {
+
+    @Test
+    void testIfTrue() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Literal(true),
+                        Arrays.asList(print("then")),
+                        Arrays.asList(print("else"))
+                )
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(print("then")));
+        test(ast, expected);
+    }
+
+    @Test
+    void testIfFalse() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                print("before"),
+                new Ast.Statement.If(new Ast.Expression.Group(new Ast.Expression.Literal(false)),
+                        Arrays.asList(print("then")),
+                        Arrays.asList(print("else"))
+                ),
+                print("after")
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(print("before"), print("else"), print("after")));
+        test(ast, expected);
+    }
+
+    @Test
+    void testIfTrueKeepsScope() {
+        Ast.Statement.Declaration declaration = new Ast.Statement.Declaration("x", "INTEGER",
+                Optional.of(new Ast.Expression.Literal(BigInteger.ONE)));
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Literal(true),
+                        Arrays.asList(declaration),
+                        Arrays.asList(print("else"))
+                )
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Literal(true),
+                        Arrays.asList(declaration),
+                        Arrays.asList()
+                )
+        ));
+        test(ast, expected);
+    }
+
+    @Test
+    void testWhileFalse() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.While(new Ast.Expression.Literal(false), Arrays.asList(print("loop")))
+        ));
+        test(ast, new Ast.Source(Arrays.asList()));
+    }
+
+    @Test
+    void testEmptyIf() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Variable("x"), Arrays.asList(), Arrays.asList()),
+                new Ast.Statement.If(new Ast.Expression.Function("CHECK", Arrays.asList()),
+                        Arrays.asList(), Arrays.asList())
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Function("CHECK", Arrays.asList()),
+                        Arrays.asList(), Arrays.asList())
+        ));
+        test(ast, expected);
+    }
+
+    @Test
+    void testNested() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.While(new Ast.Expression.Variable("running"), Arrays.asList(
+                        new Ast.Statement.If(new Ast.Expression.Literal(false),
+                                Arrays.asList(print("dead")),
+                                Arrays.asList()
+                        ),
+                        new Ast.Statement.If(new Ast.Expression.Literal(true),
+                                Arrays.asList(new Ast.Statement.While(new Ast.Expression.Literal(false),
+                                        Arrays.asList(print("dead")))),
+                                Arrays.asList()
+                        ),
+                        print("live")
+                ))
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                new Ast.Statement.While(new Ast.Expression.Variable("running"), Arrays.asList(print("live")))
+        ));
+        test(ast, expected);
+    }
+
+    private static Ast.Statement print(String value) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(
+                new Ast.Expression.Literal(value)
+        )));
+    }
+
+    private static void test(Ast.Source ast, Ast.Source expected) {
+        Assertions.assertEquals(expected, ControlFlowSimplifier.simplify(ast));
+    }
+
+}
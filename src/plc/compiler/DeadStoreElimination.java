@@ -0,0 +1,140 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Removes stores whose value is never read, using a backward liveness
+ * analysis. A variable is live at a point if some path from that point reads
+ * it before it is written again; the end of the program has nothing live.
+ * {@code IF} statements merge the liveness of both branches, and
+ * {@code WHILE} loops are iterated until the set of live variables stops
+ * changing.
+ *
+ * A dead {@link Ast.Statement.Assignment} is removed, and a dead
+ * {@link Ast.Statement.Declaration} is removed if nothing else mentions the
+ * variable or otherwise loses its initial value. Stores whose value has side
+ * effects (see {@link Purity}) or may throw are always kept.
+ */
+public final class DeadStoreElimination extends Transformer {
+
+    private final Purity purity;
+
+    public DeadStoreElimination(Set<String> pureFunctions) {
+        this.purity = new Purity(pureFunctions);
+    }
+
+    /**
+     * Removes dead stores in the given source, treating every function call
+     * as impure.
+     */
+    public static Ast.Source eliminate(Ast.Source source) {
+        return (Ast.Source) new DeadStoreElimination(Collections.emptySet()).visit(source);
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        return new Ast.Source(block(ast.getStatements(), Collections.emptySet()).statements);
+    }
+
+    /**
+     * The result of analyzing a statement list: the statements that are kept,
+     * the variables live before the list, and every variable the kept
+     * statements mention.
+     */
+    private static final class Result {
+
+        private final List<Ast.Statement> statements = new ArrayList<>();
+        private final Set<String> live;
+        private final Set<String> mentioned = new HashSet<>();
+
+        private Result(Set<String> live) {
+            this.live = new HashSet<>(live);
+        }
+
+    }
+
+    /**
+     * Analyzes a statement list backwards from the variables live after it.
+     */
+    private Result block(List<Ast.Statement> statements, Set<String> liveOut) {
+        Result result = new Result(liveOut);
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Ast.Statement statement = statement(statements.get(i), result);
+            if (statement != null) {
+                result.statements.add(statement);
+                Variables variables = Variables.of(statement);
+                result.mentioned.addAll(variables.getReads());
+                result.mentioned.addAll(variables.getWrites());
+            }
+        }
+        Collections.reverse(result.statements);
+        return result;
+    }
+
+    /**
+     * Updates the live variables across a single statement, returning the
+     * statement to keep or {@code null} if it is removed.
+     */
+    private Ast.Statement statement(Ast.Statement statement, Result result) {
+        Set<String> live = result.live;
+        if (statement instanceof Ast.Statement.Expression) {
+            live.addAll(Variables.of(statement).getReads());
+            return statement;
+        } else if (statement instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment ast = (Ast.Statement.Assignment) statement;
+            if (!live.contains(ast.getName()) && isRemovable(ast.getExpression())) {
+                return null;
+            }
+            live.remove(ast.getName());
+            live.addAll(Variables.of(ast.getExpression()).getReads());
+            return ast;
+        } else if (statement instanceof Ast.Statement.Declaration) {
+            Ast.Statement.Declaration ast = (Ast.Statement.Declaration) statement;
+            boolean dead = !live.contains(ast.getName());
+            live.remove(ast.getName());
+            if (dead && (!ast.getValue().isPresent() || isRemovable(ast.getValue().get()))) {
+                if (!result.mentioned.contains(ast.getName())) {
+                    return null;
+                }
+                return new Ast.Statement.Declaration(ast.getName(), ast.getType(), Optional.empty());
+            }
+            ast.getValue().ifPresent(value -> live.addAll(Variables.of(value).getReads()));
+            return ast;
+        } else if (statement instanceof Ast.Statement.If) {
+            Ast.Statement.If ast = (Ast.Statement.If) statement;
+            Result thenResult = block(ast.getThenStatements(), live);
+            Result elseResult = block(ast.getElseStatements(), live);
+            live.clear();
+            live.addAll(thenResult.live);
+            live.addAll(elseResult.live);
+            live.addAll(Variables.of(ast.getCondition()).getReads());
+            return new Ast.Statement.If(ast.getCondition(), thenResult.statements, elseResult.statements);
+        } else if (statement instanceof Ast.Statement.While) {
+            Ast.Statement.While ast = (Ast.Statement.While) statement;
+            Set<String> loop = new HashSet<>(live);
+            loop.addAll(Variables.of(ast.getCondition()).getReads());
+            Result body;
+            while (true) {
+                body = block(ast.getStatements(), loop);
+                if (loop.containsAll(body.live)) {
+                    break;
+                }
+                loop.addAll(body.live);
+            }
+            live.clear();
+            live.addAll(loop);
+            return new Ast.Statement.While(ast.getCondition(), body.statements);
+        }
+        throw new AssertionError(statement.getClass());
+    }
+
+    private boolean isRemovable(Ast.Expression expression) {
+        return purity.visit(expression) && !Purity.mayThrow(expression);
+    }
+
+}
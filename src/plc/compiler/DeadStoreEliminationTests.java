@@ -0,0 +1,113 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class DeadStoreEliminationTests {
+
+    @Test
+    void testUnreadDeclaration() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("unused", literal(1)),
+                declare("used", literal(2)),
+                print("used")
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("used", literal(2)),
+                print("used")
+        ));
+        test(ast, expected);
+    }
+
+    @Test
+    void testOverwritten() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("x", literal(1)),
+                new Ast.Statement.Assignment("x", literal(2)),
+                new Ast.Statement.Assignment("x", literal(3)),
+                print("x")
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                new Ast.Statement.Declaration("x", "INTEGER", Optional.empty()),
+                new Ast.Statement.Assignment("x", literal(3)),
+                print("x")
+        ));
+        test(ast, expected);
+    }
+
+    @Test
+    void testSideEffectsKept() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("x", new Ast.Expression.Function("READ", Arrays.asList())),
+                new Ast.Statement.Assignment("x", new Ast.Expression.Function("READ", Arrays.asList()))
+        ));
+        test(ast, ast);
+    }
+
+    @Test
+    void testIf() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("x", literal(1)),
+                new Ast.Statement.If(new Ast.Expression.Variable("flag"),
+                        Arrays.asList(new Ast.Statement.Assignment("x", literal(2))),
+                        Arrays.asList()
+                ),
+                print("x")
+        ));
+        test(ast, ast);
+    }
+
+    @Test
+    void testWhile() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("i", literal(0)),
+                declare("last", literal(0)),
+                new Ast.Statement.While(new Ast.Expression.Binary("!=",
+                                new Ast.Expression.Variable("i"),
+                                literal(10)
+                        ), Arrays.asList(
+                        new Ast.Statement.Assignment("last", new Ast.Expression.Variable("i")),
+                        new Ast.Statement.Assignment("i", new Ast.Expression.Binary("+",
+                                new Ast.Expression.Variable("i"),
+                                literal(1)
+                        ))
+                ))
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("i", literal(0)),
+                new Ast.Statement.While(new Ast.Expression.Binary("!=",
+                        new Ast.Expression.Variable("i"),
+                        literal(10)
+                ), Arrays.asList(
+                        new Ast.Statement.Assignment("i", new Ast.Expression.Binary("+",
+                                new Ast.Expression.Variable("i"),
+                                literal(1)
+                        ))
+                ))
+        ));
+        test(ast, expected);
+    }
+
+    private static Ast.Expression literal(long value) {
+        return new Ast.Expression.Literal(BigInteger.valueOf(value));
+    }
+
+    private static Ast.Statement declare(String name, Ast.Expression value) {
+        return new Ast.Statement.Declaration(name, "INTEGER", Optional.of(value));
+    }
+
+    private static Ast.Statement print(String name) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(
+                new Ast.Expression.Variable(name)
+        )));
+    }
+
+    private static void test(Ast.Source ast, Ast.Source expected) {
+        Assertions.assertEquals(expected, DeadStoreElimination.eliminate(ast));
+    }
+
+}
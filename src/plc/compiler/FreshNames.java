@@ -0,0 +1,33 @@
+package plc.compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Generates names for compiler temporaries. Generated names start with
+ * {@code $}, which the lexer never accepts in an identifier, and skip any
+ * name already used in the program so passes can run more than once.
+ */
+public final class FreshNames {
+
+    private final Set<String> used = new HashSet<>();
+    private int next = 0;
+
+    public FreshNames(Ast ast) {
+        Variables variables = Variables.of(ast);
+        used.addAll(variables.getReads());
+        used.addAll(variables.getWrites());
+    }
+
+    /**
+     * Returns a new name with the given prefix, such as {@code $loop0}.
+     */
+    public String next(String prefix) {
+        String name;
+        do {
+            name = "$" + prefix + next++;
+        } while (!used.add(name));
+        return name;
+    }
+
+}
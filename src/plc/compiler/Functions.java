@@ -0,0 +1,51 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The functions available to an execution engine, looked up by name. The
+ * registry starts with {@code PRINT}, which writes its arguments (separated
+ * by spaces) on a line of the given writer.
+ */
+public final class Functions {
+
+    private final Map<String, Function<List<Object>, Object>> functions = new HashMap<>();
+
+    public Functions(PrintWriter out) {
+        define("PRINT", arguments -> {
+            StringBuilder builder = new StringBuilder();
+            for (Object argument : arguments) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(Values.format(argument));
+            }
+            out.println(builder);
+            return null;
+        });
+    }
+
+    /**
+     * Registers a function, replacing any existing function with that name.
+     */
+    public void define(String name, Function<List<Object>, Object> function) {
+        functions.put(name, function);
+    }
+
+    /**
+     * Returns the function with the given name, throwing an
+     * {@link EvaluationException} if it is not defined.
+     */
+    public Function<List<Object>, Object> lookup(String name) {
+        Function<List<Object>, Object> function = functions.get(name);
+        if (function == null) {
+            throw new EvaluationException("Function " + name + " is not defined.");
+        }
+        return function;
+    }
+
+}
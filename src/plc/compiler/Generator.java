@@ -1,14 +1,221 @@
 package plc.compiler;
 
 import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public final class Generator implements Ast.Visitor<Void> {
 
-    private final PrintWriter writer;
+    /**
+     * Settings for how the generated class is laid out.
+     */
+    public static final class Options {
+
+        private int methodBudget = Outliner.DEFAULT_BUDGET;
+        private Builtins builtins;
+        private ForkJoinPool pool;
+        private boolean compact;
+        private SourceMap sourceMap;
+        private boolean instrumented;
+        private Profile profile;
+
+        /**
+         * Sets the estimated bytecode size above which statements are moved
+         * into helper methods (see {@link Outliner}), which must be at least
+         * {@link Outliner#MIN_BUDGET}.
+         */
+        public Options setMethodBudget(int methodBudget) {
+            if (methodBudget < Outliner.MIN_BUDGET) {
+                throw new IllegalArgumentException("Method budget " + methodBudget + " is below "
+                        + Outliner.MIN_BUDGET + ".");
+            }
+            this.methodBudget = methodBudget;
+            return this;
+        }
+
+        public int getMethodBudget() {
+            return methodBudget;
+        }
+
+        /**
+         * Sets the registry used to call builtin functions, in which case
+         * {@code main} also flushes the {@link ScriptRuntime} when it
+         * finishes. By default, functions are called by their own names.
+         */
+        public Options setBuiltins(Builtins builtins) {
+            this.builtins = builtins;
+            return this;
+        }
+
+        public Builtins getBuiltins() {
+            return builtins;
+        }
+
+        /**
+         * Sets the pool used to render long statement lists in parallel, or
+         * {@code null} to render sequentially. The output is the same either
+         * way.
+         */
+        public Options setPool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public ForkJoinPool getPool() {
+            return pool;
+        }
+
+        /**
+         * Sets whether to leave out indentation and optional spaces, for
+         * output that is only read by javac. Lines are still broken in the
+         * same places, so line numbers match the pretty output.
+         */
+        public Options setCompact(boolean compact) {
+            this.compact = compact;
+            return this;
+        }
+
+        public boolean isCompact() {
+            return compact;
+        }
+
+        /**
+         * Sets a map to fill in with the generated text of every node that
+         * has a position in the script. Long statement lists are then
+         * rendered sequentially, since positions depend on all the text
+         * before them. Not supported by the {@link IncrementalGenerator}.
+         */
+        public Options setSourceMap(SourceMap sourceMap) {
+            this.sourceMap = sourceMap;
+            return this;
+        }
+
+        public SourceMap getSourceMap() {
+            return sourceMap;
+        }
+
+        /**
+         * Sets whether to insert probes that collect a {@link Profile}: a
+         * counter per statement, a timer per {@code WHILE} and per branch
+         * of an {@code IF}, and call counts. Only nodes with a position in
+         * the script are instrumented. Long statement lists are then
+         * rendered sequentially, since probes are numbered in order.
+         */
+        public Options setInstrumented(boolean instrumented) {
+            this.instrumented = instrumented;
+            return this;
+        }
+
+        public boolean isInstrumented() {
+            return instrumented;
+        }
+
+        /**
+         * Sets a profile of an earlier run to optimize for: the branch of an
+         * {@code IF} that ran more often is emitted first, and cold code is
+         * moved out of hot methods (see {@link Outliner}). Specialization
+         * uses the profile through {@link TypeSpecializer#analyze(Ast.Source,
+         * Profile)}. The profile is ignored unless it {@link Profile#matches}
+         * the source, so it is not used when generating statement by
+         * statement.
+         */
+        public Options setProfile(Profile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        public Profile getProfile() {
+            return profile;
+        }
+
+    }
+
+    /**
+     * The number of statements in a list above which it is rendered in
+     * parallel, if a pool is set.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The maximum length of each string of the probe table, which must fit
+     * in a class file constant.
+     */
+    private static final int TABLE_CHUNK = 16384;
+
+    private static final int[] NO_SLOTS = {};
+
+    private final Sink writer;
+    private final SourceMap.Recorder recorder;
+    private final TypeSpecializer types;
+    private final Options options;
+    private LiteralPool literals;
+    private Outliner outliner;
+    private Profile profile;
     private int indent = 0;
+    private boolean streamed = false;
+    private IncrementalGenerator incremental;
+    private int slots = 0;
+    private final StringBuilder table = new StringBuilder();
+    private int[] callSlots = NO_SLOTS;
+    private long checksum = 0;
 
     public Generator(PrintWriter writer) {
-        this.writer = writer;
+        this(writer, null);
+    }
+
+    /**
+     * Creates a generator that declares variables with the Java types chosen
+     * by the given analysis of the source, rather than the source type names.
+     */
+    public Generator(PrintWriter writer, TypeSpecializer types) {
+        this(writer, types, new Options());
+    }
+
+    public Generator(PrintWriter writer, TypeSpecializer types, Options options) {
+        this(new WriterSink(writer), types, options);
+    }
+
+    public Generator(Sink writer) {
+        this(writer, null, new Options());
+    }
+
+    public Generator(Sink writer, TypeSpecializer types, Options options) {
+        this.recorder = options.getSourceMap() != null ? new SourceMap.Recorder(writer) : null;
+        this.writer = recorder != null ? recorder : writer;
+        this.types = types;
+        this.options = options;
+    }
+
+    /**
+     * Creates a generator that lets an {@link IncrementalGenerator} write
+     * statements it has seen before from its previous output.
+     */
+    Generator(CharSink writer, Options options, IncrementalGenerator incremental) {
+        this(writer, null, options);
+        if (options.isInstrumented()) {
+            throw new AssertionError("Probes are numbered by position in the whole output.");
+        }
+        if (options.getSourceMap() != null) {
+            throw new AssertionError("Statements copied from the previous output are not mapped.");
+        }
+        this.incremental = incremental;
+    }
+
+    /**
+     * Creates a generator for part of the output of another, sharing its
+     * analyses and starting at its current indentation.
+     */
+    private Generator(Generator parent, Sink writer) {
+        this(writer, parent.types, parent.options);
+        this.literals = parent.literals;
+        this.outliner = parent.outliner;
+        this.profile = parent.profile;
+        this.indent = parent.indent;
     }
 
     private void print(Object... objects) {
@@ -16,154 +223,693 @@ public final class Generator implements Ast.Visitor<Void> {
             if (object instanceof Ast) {
                 visit((Ast) object);
             } else {
-                writer.write(object.toString());
+                writer.append(object);
             }
         }
     }
 
     private void newline(int indent) {
-        writer.println();
-        for (int i = 0; i < indent; i++) {
-            writer.write("    ");
+        writer.newline(options.isCompact() ? 0 : indent);
+    }
+
+    /**
+     * Returns the pretty or compact form of some punctuation.
+     */
+    private String layout(String pretty, String compact) {
+        return options.isCompact() ? compact : pretty;
+    }
+
+    /**
+     * Visits a node, recording the text it produced in the source map and
+     * counting statements if instrumented.
+     */
+    @Override
+    public Void visit(Ast ast) {
+        if (options.isInstrumented() && ast instanceof Ast.Statement) {
+            visitProbe((Ast.Statement) ast);
+        }
+        if (recorder == null || ast.getIndex() < 0) {
+            return Ast.Visitor.super.visit(ast);
         }
+        int line = recorder.getLine();
+        int column = recorder.getColumn();
+        Ast.Visitor.super.visit(ast);
+        options.getSourceMap().add(line, column, recorder.getLine(), recorder.getColumn(), ast.getIndex());
+        return null;
     }
 
     @Override
     public Void visit(Ast.Source ast) {
-        writer.print("public final class Main {");
+        writer.append(layout("public final class Main {", "public final class Main{"));
         newline(0);
-        newline(++indent);
-        writer.print("public static void main(String[] args) {");
+        if (types != null) {
+            literals = LiteralPool.collect(ast, types);
+            for (LiteralPool.Constant constant : literals.getConstants()) {
+                newline(1);
+                writer.append("private static final ").append(constant.getType()).append(' ')
+                        .append(constant.getName()).append(layout(" = ", "=")).append(constant.getInitializer()).append(';');
+            }
+            if (!literals.getConstants().isEmpty()) {
+                newline(0);
+            }
+        }
+        if (options.getProfile() != null && options.getProfile().matches(ast)) {
+            profile = options.getProfile();
+        }
+        checksum = Profile.checksum(ast);
+        outliner = Outliner.outline(ast, options.getMethodBudget(), profile);
+        for (Ast.Statement.Declaration field : outliner.getFields()) {
+            newline(1);
+            writer.append("private static ").append(type(field)).append(' ').append(outliner.getName(field)).append(';');
+            if (outliner.getFlag(field) != null) {
+                newline(1);
+                writer.append("private static boolean ").append(outliner.getFlag(field)).append(';');
+            }
+        }
+        if (!outliner.getFields().isEmpty()) {
+            newline(0);
+        }
+        beginMain();
+        List<Object> units = new ArrayList<>(body(ast.getStatements()));
+        if (options.isInstrumented()) {
+            units.add(completion());
+        }
+        visitUnits(units);
+        endMain();
+        for (Outliner.Method method : outliner.getMethods()) {
+            newline(0);
+            newline(indent);
+            writer.append("private static void ").append(method.getName()).append(layout("() {", "(){"));
+            visitUnits(method.getBody());
+            writer.append("}");
+        }
+        if (options.isInstrumented()) {
+            visitProbes();
+        }
+        endClass();
+        return null;
+    }
+
+    /**
+     * Writes the class up to the first statement of {@code main}, for
+     * generating a program one statement at a time with {@link
+     * #visitMain(Ast.Statement)} and {@link #visitEpilogue()}. The output is
+     * the same as visiting the whole source, but analyses of the whole
+     * program (literal pooling and outlining) are not available, so this is
+     * only supported without a {@link TypeSpecializer}.
+     */
+    public void visitPrologue() {
+        if (types != null) {
+            throw new AssertionError("Specialized programs must be generated as a whole.");
+        }
+        writer.append(layout("public final class Main {", "public final class Main{"));
+        newline(0);
+        beginMain();
         ++indent;
-        boolean has_statements = ast.getStatements().size() > 0;
-        for (Ast.Statement statement : ast.getStatements()) {
+    }
+
+    /**
+     * Writes the next top-level statement of {@code main}.
+     */
+    public void visitMain(Ast.Statement ast) {
+        checksum = Profile.checksum(checksum, ast);
+        newline(indent);
+        visitStatement(ast);
+        streamed = true;
+    }
+
+    /**
+     * Writes the rest of the class after the last statement of {@code main}.
+     */
+    public void visitEpilogue() {
+        if (options.isInstrumented()) {
             newline(indent);
-            visit(statement);
+            writer.append(completion());
+            streamed = true;
         }
         --indent;
-        if (has_statements)
+        if (streamed) {
             newline(indent);
-        writer.print("}");
+        }
+        endMain();
+        if (options.isInstrumented()) {
+            visitProbes();
+        }
+        endClass();
+    }
+
+    /**
+     * Writes the declaration of {@code main}, up to its first statement.
+     */
+    private void beginMain() {
+        newline(++indent);
+        writer.append(layout("public static void main(String[] args) {", "public static void main(String[] args){"));
+        if (options.getBuiltins() != null) {
+            newline(++indent);
+            writer.append(layout("try {", "try{"));
+        }
+    }
+
+    /**
+     * Closes {@code main} after its body, which ends with a newline.
+     */
+    private void endMain() {
+        if (options.getBuiltins() != null) {
+            writer.append(layout("} finally {", "}finally{"));
+            newline(indent + 1);
+            writer.append(ScriptRuntime.class.getName()).append(".flush();");
+            newline(indent);
+            writer.append("}");
+            newline(--indent);
+        }
+        writer.append("}");
+    }
+
+    private void endClass() {
         newline(--indent);
         newline(0);
-        writer.print("}");
+        writer.append("}");
         newline(0);
-        return null;
+    }
+
+    /**
+     * Visits the statements of a block on separate lines, indented one level
+     * deeper and followed by a newline if there are any. Statements moved
+     * into helper methods are replaced by calls.
+     */
+    private void visitBody(List<Ast.Statement> statements) {
+        visitUnits(body(statements));
+    }
+
+    private List<Object> body(List<Ast.Statement> statements) {
+        return outliner != null ? outliner.getBody(statements) : new ArrayList<>(statements);
+    }
+
+    private void visitUnits(List<Object> units) {
+        ++indent;
+        if (options.getPool() != null && incremental == null && recorder == null && !options.isInstrumented()
+                && units.size() > PARALLEL_THRESHOLD) {
+            List<Render> tasks = new ArrayList<>();
+            for (int from = 0; from < units.size(); from += PARALLEL_THRESHOLD) {
+                tasks.add(new Render(units.subList(from, Math.min(from + PARALLEL_THRESHOLD, units.size()))));
+            }
+            if (ForkJoinTask.getPool() == options.getPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                options.getPool().invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            }
+            for (Render task : tasks) {
+                task.sink.writeTo(writer);
+            }
+        } else {
+            units.forEach(this::visitUnit);
+        }
+        --indent;
+        if (!units.isEmpty())
+            newline(indent);
+    }
+
+    private void visitUnit(Object unit) {
+        newline(indent);
+        if (unit instanceof Outliner.Method) {
+            writer.append(((Outliner.Method) unit).getName()).append("();");
+        } else if (unit instanceof String) {
+            writer.append((String) unit);
+        } else {
+            visitStatement((Ast.Statement) unit);
+        }
+    }
+
+    private void visitStatement(Ast.Statement ast) {
+        if (incremental != null) {
+            incremental.visit(ast, indent, () -> visit(ast));
+        } else {
+            visit(ast);
+        }
+    }
+
+    /**
+     * Renders a run of units into a buffer. Each statement's text depends
+     * only on the statement and the indentation, so the buffers of all runs
+     * can be concatenated in order.
+     */
+    private final class Render extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Object> units;
+        private final CharSink sink = new CharSink(1024);
+
+        private Render(List<Object> units) {
+            this.units = units;
+        }
+
+        @Override
+        protected void compute() {
+            Generator generator = new Generator(Generator.this, sink);
+            units.forEach(generator::visitUnit);
+        }
+
+    }
+
+    private String type(Ast.Statement.Declaration ast) {
+        if (types != null && types.getRepresentation(ast).getJavaType() != null) {
+            return types.getRepresentation(ast).getJavaType();
+        }
+        return ast.getType();
+    }
+
+    private String name(Ast ast) {
+        if (outliner != null) {
+            return outliner.getName(ast);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            return ((Ast.Statement.Declaration) ast).getName();
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            return ((Ast.Statement.Assignment) ast).getName();
+        }
+        return ((Ast.Expression.Variable) ast).getName();
     }
 
     @Override
     public Void visit(Ast.Statement.Expression ast) {
         visit(ast.getExpression());
-        writer.print(";");
+        writer.append(";");
         return null;
     }
 
     @Override
     public Void visit(Ast.Statement.Declaration ast) {
-        writer.print(ast.getType() + " " + ast.getName());
+        if (outliner != null && outliner.isField(ast)) {
+            //the field may hold a value from an earlier run of this scope
+            writer.append(name(ast)).append(layout(" = ", "="));
+            if (ast.getValue().isPresent()) {
+                visitConverted(ast.getValue().get());
+            } else {
+                writer.append(type(ast).equals("long") ? "0L" : type(ast).equals("boolean") ? "false" : "null");
+            }
+            writer.append(";");
+            if (outliner.getFlag(ast) != null) {
+                writer.append(layout(" ", "")).append(outliner.getFlag(ast)).append(layout(" = ", "=")).append("false;");
+            }
+            if (ast.getValue().isPresent()) {
+                visitOverflowProbe(ast);
+            }
+            return null;
+        }
+        writer.append(type(ast)).append(' ').append(name(ast));
         if (ast.getValue().isPresent()) {
-            writer.print(" = ");
-            visit(ast.getValue().get());
+            writer.append(layout(" = ", "="));
+            visitConverted(ast.getValue().get());
+        }
+        writer.append(";");
+        if (ast.getValue().isPresent()) {
+            visitOverflowProbe(ast);
         }
-        writer.print(";");
         return null;
     }
 
     @Override
     public Void visit(Ast.Statement.Assignment ast) {
-        writer.print(ast.getName() + " = ");
-        visit(ast.getExpression());
-        writer.print(";");
+        writer.append(name(ast)).append(layout(" = ", "="));
+        visitConverted(ast.getExpression());
+        writer.append(";");
+        if (outliner != null && outliner.getFlag(ast) != null) {
+            writer.append(layout(" ", "")).append(outliner.getFlag(ast)).append(layout(" = ", "=")).append("true;");
+        }
+        visitOverflowProbe(ast);
         return null;
     }
 
+    /**
+     * Counts whether the value stored by a declaration or assignment fits in
+     * a {@code long}, if the variable is a {@link BigInteger}, so a later
+     * compile can speculate on it (see {@link TypeSpecializer}).
+     */
+    private void visitOverflowProbe(Ast.Statement ast) {
+        if (!options.isInstrumented() || types == null) {
+            return;
+        }
+        Ast.Statement.Declaration declaration = types.getDeclaration(ast);
+        if (declaration.getIndex() < 0
+                || types.getRepresentation(declaration) != TypeSpecializer.Representation.BIG_INTEGER) {
+            return;
+        }
+        newline(indent);
+        writer.append(layout("if (", "if(")).append(name(ast)).append(".bitLength()").append(layout(" < ", "<"))
+                .append("64").append(layout(") ", ")")).append(increment(probe(declaration, Profile.Kind.LONG_STORE)))
+                .append(layout(" else ", "else ")).append(increment(probe(declaration, Profile.Kind.OVERFLOW)));
+    }
+
     @Override
     public Void visit(Ast.Statement.If ast) {
-        writer.print("if (");
-        visit(ast.getCondition());
-        writer.print(") {");
-        if (ast.getThenStatements().size() != 0) {
-            ++indent;
-            for (Ast.Statement statement : ast.getThenStatements()) {
-                newline(indent);
-                visit(statement);
-            }
-            newline(--indent);
+        boolean swap = profile != null && ast.getIndex() >= 0 && !ast.getElseStatements().isEmpty()
+                && profile.get(ast.getIndex(), Profile.Kind.ELSE) > profile.get(ast.getIndex(), Profile.Kind.THEN);
+        List<Ast.Statement> first = swap ? ast.getElseStatements() : ast.getThenStatements();
+        List<Ast.Statement> second = swap ? ast.getThenStatements() : ast.getElseStatements();
+        writer.append(layout("if (", "if("));
+        if (swap) {
+            //the branch that ran more often is emitted first
+            writer.append("!(");
+            visit(ast.getCondition());
+            writer.append(")");
+        } else {
+            visit(ast.getCondition());
         }
-        writer.print("}");
-        if (!ast.getElseStatements().isEmpty()) {
-            writer.print(" else {");
-            ++indent;
-            for (Ast.Statement statement : ast.getElseStatements()) {
-                newline(indent);
-                visit(statement);
-            }
-            newline(--indent);
-            writer.print("}");
+        writer.append(layout(") {", "){"));
+        if (options.isInstrumented() && ast.getIndex() >= 0) {
+            visitUnits(swap ? timed(ast, Profile.Kind.ELSE, Profile.Kind.ELSE_TIME, first)
+                    : timed(ast, Profile.Kind.THEN, Profile.Kind.TIME, first));
+            writer.append("}").append(layout(" else {", "else{"));
+            visitUnits(swap ? timed(ast, Profile.Kind.THEN, Profile.Kind.TIME, second)
+                    : timed(ast, Profile.Kind.ELSE, Profile.Kind.ELSE_TIME, second));
+            writer.append("}");
+            return null;
+        }
+        visitBody(first);
+        writer.append("}");
+        if (!second.isEmpty()) {
+            writer.append(layout(" else {", "else{"));
+            visitBody(second);
+            writer.append("}");
         }
         return null;
     }
 
     @Override
     public Void visit(Ast.Statement.While ast) {
-        writer.print("while (");
-        visit(ast.getCondition());
-        writer.print(") {");
-        ++indent;
-        boolean has_statements = ast.getStatements().size() > 0;
-        for (Ast.Statement statement : ast.getStatements()) {
+        if (options.isInstrumented() && ast.getIndex() >= 0) {
+            int time = probe(ast, Profile.Kind.TIME);
+            int iterations = probe(ast, Profile.Kind.ITERATION);
+            writer.append(startTimer(time));
             newline(indent);
-            visit(statement);
-        }
-        --indent;
-        if (has_statements)
+            //the condition runs once more than the body every time the loop starts
+            callSlots = new int[] {callSlots.length > 0 ? callSlots[0] : -1, iterations};
+            writer.append(layout("while (", "while("));
+            visit(ast.getCondition());
+            writer.append(layout(") {", "){"));
+            List<Object> units = new ArrayList<>();
+            units.add(increment(iterations));
+            units.addAll(body(ast.getStatements()));
+            visitUnits(units);
+            writer.append("}");
             newline(indent);
-        writer.print("}");
+            writer.append(stopTimer(time));
+            return null;
+        }
+        writer.append(layout("while (", "while("));
+        visit(ast.getCondition());
+        writer.append(layout(") {", "){"));
+        visitBody(ast.getStatements());
+        writer.append("}");
         return null;
     }
 
+    /**
+     * Counts a statement, and sets the counter calls in its expressions are
+     * counted by: since every operand is always evaluated, a call runs
+     * exactly as often as the statement containing it.
+     */
+    private void visitProbe(Ast.Statement ast) {
+        if (ast.getIndex() < 0) {
+            callSlots = NO_SLOTS;
+            return;
+        }
+        int slot = probe(ast, Profile.Kind.STATEMENT);
+        writer.append(increment(slot));
+        newline(indent);
+        callSlots = new int[] {slot};
+    }
+
+    /**
+     * Returns the units of an {@code IF} branch, counted and, unless it is
+     * empty, timed.
+     */
+    private List<Object> timed(Ast.Statement.If ast, Profile.Kind count, Profile.Kind time, List<Ast.Statement> statements) {
+        List<Object> units = new ArrayList<>();
+        units.add(increment(probe(ast, count)));
+        if (!statements.isEmpty()) {
+            int timer = probe(ast, time);
+            units.add(startTimer(timer));
+            units.addAll(body(statements));
+            units.add(stopTimer(timer));
+        }
+        return units;
+    }
+
+    /**
+     * Allocates a slot of the probe array for a node.
+     */
+    private int probe(Ast ast, Profile.Kind kind) {
+        int slot = slots++;
+        entry(ast, kind, slot);
+        return slot;
+    }
+
+    private void entry(Ast ast, Profile.Kind kind, int slot) {
+        if (table.length() % TABLE_CHUNK > TABLE_CHUNK - 32) {
+            //pad so no entry spans two strings of the table
+            while (table.length() % TABLE_CHUNK != 0) {
+                table.append(';');
+            }
+        }
+        table.append(ast.getIndex()).append(' ').append(kind.ordinal()).append(' ').append(slot).append(';');
+    }
+
+    private String increment(int slot) {
+        return "$probes[" + slot + "]++;";
+    }
+
+    private String startTimer(int slot) {
+        return "long $start" + slot + layout(" = ", "=") + "System.nanoTime();";
+    }
+
+    private String stopTimer(int slot) {
+        return "$probes[" + slot + "]" + layout(" += ", "+=") + "System.nanoTime()" + layout(" - ", "-") + "$start" + slot + ";";
+    }
+
+    /**
+     * Returns the statement that records in the {@link Profile} that
+     * {@code main} returned normally.
+     */
+    private String completion() {
+        return Profile.class.getName() + ".complete($probes);";
+    }
+
+    /**
+     * Declares the probe array and registers it with the {@link Profile}
+     * when the class is initialized.
+     */
+    private void visitProbes() {
+        newline(0);
+        newline(indent);
+        writer.append("private static final long[] $probes").append(layout(" = ", "="))
+                .append("new long[").append(slots).append("];");
+        newline(0);
+        newline(indent);
+        writer.append(layout("static {", "static{"));
+        newline(indent + 1);
+        writer.append(Profile.class.getName()).append(".register($probes").append(layout(", ", ","))
+                .append(checksum).append('L');
+        for (int start = 0; start < table.length(); start += TABLE_CHUNK) {
+            writer.append(layout(", ", ",")).append('"')
+                    .append(table.substring(start, Math.min(start + TABLE_CHUNK, table.length()))).append('"');
+        }
+        writer.append(");");
+        newline(indent);
+        writer.append("}");
+    }
+
     @Override
     public Void visit(Ast.Expression.Literal ast) {
+        if (literals != null && literals.getName(ast, types.getRepresentation(ast)) != null) {
+            writer.append(literals.getName(ast, types.getRepresentation(ast)));
+            return null;
+        } else if (types != null && ast.getValue() instanceof BigInteger) {
+            if (types.getRepresentation(ast) == TypeSpecializer.Representation.LONG) {
+                writer.append(((BigInteger) ast.getValue()).longValue()).append('L');
+            } else {
+                writer.append("new java.math.BigInteger(\"").append(ast.getValue()).append("\")");
+            }
+            return null;
+        } else if (types != null && ast.getValue() instanceof BigDecimal) {
+            writer.append("new java.math.BigDecimal(\"").append(ast.getValue()).append("\")");
+            return null;
+        }
         if (ast.getValue() instanceof String)
-            writer.print("\"");
-        writer.print(ast.getValue());
+            writer.append('"');
+        writer.append(ast.getValue());
         if (ast.getValue() instanceof String)
-            writer.print("\"");
+            writer.append('"');
         return null;
     }
 
     @Override
     public Void visit(Ast.Expression.Group ast) {
-        writer.print("(");
+        writer.append("(");
         visit(ast.getExpression());
-        writer.print(")");
+        writer.append(")");
         return null;
     }
 
     @Override
     public Void visit(Ast.Expression.Binary ast) {
+        if (types != null) {
+            visitSpecialized(ast);
+            return null;
+        }
         visit(ast.getLeft());
-        writer.print(" " + ast.getOperator() + " ");
+        visitOperator(ast.getOperator(), ast.getRight());
         visit(ast.getRight());
         return null;
     }
 
+    private void visitSpecialized(Ast.Expression.Binary ast) {
+        String operator = ast.getOperator();
+        switch (types.getOperandRepresentation(ast)) {
+            case LONG:
+                if (types.isGuarded(ast) && !operator.equals("/")) {
+                    //overflow throws, as the long result has nowhere to fall back to (see TypeSpecializer)
+                    String method = operator.equals("+") ? "addExact" : operator.equals("-") ? "subtractExact" : "multiplyExact";
+                    writer.append("Math.").append(method).append('(');
+                    visitConverted(ast.getLeft());
+                    writer.append(layout(", ", ","));
+                    visitConverted(ast.getRight());
+                    writer.append(")");
+                    return;
+                }
+                break;
+            case BIG_INTEGER:
+            case BIG_DECIMAL:
+                visitConverted(ast.getLeft());
+                if (operator.equals("==") || operator.equals("!=")) {
+                    writer.append(".compareTo(");
+                    visitConverted(ast.getRight());
+                    writer.append(layout(") ", ")")).append(operator).append(layout(" 0", "0"));
+                    return;
+                }
+                String method = operator.equals("+") ? "add" : operator.equals("-") ? "subtract" : operator.equals("*") ? "multiply" : "divide";
+                writer.append('.').append(method).append('(');
+                visitConverted(ast.getRight());
+                if (operator.equals("/") && types.getOperandRepresentation(ast) == TypeSpecializer.Representation.BIG_DECIMAL) {
+                    writer.append(layout(", ", ",")).append("java.math.RoundingMode.HALF_EVEN");
+                }
+                writer.append(")");
+                return;
+            case STRING:
+                if (operator.equals("==") || operator.equals("!=")) {
+                    if (operator.equals("!=")) {
+                        writer.append("!");
+                    }
+                    visitConverted(ast.getLeft());
+                    writer.append(".equals(");
+                    visitConverted(ast.getRight());
+                    writer.append(")");
+                    return;
+                }
+                break;
+        }
+        visitConverted(ast.getLeft());
+        visitOperator(operator, ast.getRight());
+        visitConverted(ast.getRight());
+    }
+
+    /**
+     * Writes a binary operator. Compact output only keeps the space after
+     * {@code +} or {@code -} where the right operand may start with a sign,
+     * as in {@code x - -1}.
+     */
+    private void visitOperator(String operator, Ast.Expression right) {
+        if (!options.isCompact()) {
+            writer.append(' ').append(operator).append(' ');
+        } else {
+            writer.append(operator);
+            if ((operator.equals("+") || operator.equals("-")) && startsWithSign(right)) {
+                writer.append(' ');
+            }
+        }
+    }
+
+    private static boolean startsWithSign(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal) {
+            Object value = ((Ast.Expression.Literal) ast).getValue();
+            return value instanceof BigInteger && ((BigInteger) value).signum() < 0
+                    || value instanceof BigDecimal && ((BigDecimal) value).signum() < 0;
+        }
+        return ast instanceof Ast.Expression.Binary && startsWithSign(((Ast.Expression.Binary) ast).getLeft());
+    }
+
+    /**
+     * Visits an expression, converting its value to the representation its
+     * parent expects.
+     */
+    private void visitConverted(Ast.Expression ast) {
+        if (types == null) {
+            visit(ast);
+            return;
+        }
+        TypeSpecializer.Representation from = types.getRepresentation(ast);
+        TypeSpecializer.Representation to = types.getTarget(ast);
+        if (literals != null && ast instanceof Ast.Expression.Literal
+                && literals.getName((Ast.Expression.Literal) ast, to) != null) {
+            writer.append(literals.getName((Ast.Expression.Literal) ast, to));
+        } else if (from == to || from == TypeSpecializer.Representation.UNKNOWN) {
+            visit(ast);
+        } else if (from == TypeSpecializer.Representation.LONG && to == TypeSpecializer.Representation.BIG_INTEGER) {
+            print("java.math.BigInteger.valueOf(", ast, ")");
+        } else if (from == TypeSpecializer.Representation.LONG && to == TypeSpecializer.Representation.BIG_DECIMAL) {
+            print("java.math.BigDecimal.valueOf(", ast, ")");
+        } else if (from == TypeSpecializer.Representation.BIG_INTEGER && to == TypeSpecializer.Representation.BIG_DECIMAL) {
+            print("new java.math.BigDecimal(", ast, ")");
+        } else if (from == TypeSpecializer.Representation.BIG_INTEGER && to == TypeSpecializer.Representation.LONG) {
+            print(ast, ".longValueExact()");
+        } else if (from == TypeSpecializer.Representation.BIG_DECIMAL && to == TypeSpecializer.Representation.STRING) {
+            print(ast, ".toPlainString()");
+        } else {
+            visit(ast);
+        }
+    }
+
     @Override
     public Void visit(Ast.Expression.Variable ast) {
-        writer.print(ast.getName());
+        if (outliner != null && outliner.getFlag(ast) != null) {
+            //a field declared without a value may be read before it is assigned
+            String type = type(outliner.getDeclaration(ast));
+            String boxed = type.equals("long") ? "Long" : type.equals("boolean") ? "Boolean" : type;
+            writer.append('(').append(outliner.getFlag(ast)).append(layout(" ? ", "?")).append(name(ast))
+                    .append(layout(" : ", ":")).append("plc.compiler.Values.<").append(boxed)
+                    .append(">readUninitialized(\"").append(ast.getName()).append("\"))");
+            return null;
+        }
+        writer.append(name(ast));
         return null;
     }
 
     @Override
     public Void visit(Ast.Expression.Function ast) {
-        writer.print(ast.getName() + "(");
+        String name = ast.getName();
+        if (options.getBuiltins() != null && options.getBuiltins().lookup(name) != null) {
+            name = options.getBuiltins().lookup(name);
+        }
+        if (options.isInstrumented() && ast.getIndex() >= 0) {
+            for (int slot : callSlots) {
+                if (slot >= 0) {
+                    entry(ast, Profile.Kind.CALL, slot);
+                }
+            }
+        }
+        writer.append(name).append('(');
         int i = 0;
         for (Ast.Expression expression : ast.getArguments()) {
             visit(expression);
             if (++i < ast.getArguments().size())
-                writer.print(", ");
+                writer.append(layout(", ", ","));
         }
-        writer.print(")");
+        writer.append(")");
         return null;
     }
 
@@ -9,6 +9,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 public class GeneratorTests {
 
@@ -511,6 +512,119 @@ public class GeneratorTests {
         test(ast, expected);
     }
 
+    @Test
+    void testSpecializedConstants() {
+        Ast.Source ast = (Ast.Source) Parser.parse(Lexer.lex(String.join("\n",
+                "LET x : DECIMAL = 1.5;",
+                "WHILE x != 1.5 DO",
+                "    x = x * 2;",
+                "END"
+        )));
+        String expected = String.join(System.lineSeparator(),
+                "public final class Main {",
+                "",
+                "    private static final java.math.BigDecimal $const0 = new java.math.BigDecimal(\"1.5\");",
+                "    private static final java.math.BigDecimal $const1 = new java.math.BigDecimal(\"2\");",
+                "",
+                "    public static void main(String[] args) {",
+                "        java.math.BigDecimal x = $const0;",
+                "        while (x.compareTo($const0) != 0) {",
+                "            x = x.multiply($const1);",
+                "        }",
+                "    }",
+                "",
+                "}",
+                ""
+        );
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), TypeSpecializer.analyze(ast)).visit(ast);
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    void testCompact() {
+        Ast.Source ast = (Ast.Source) Parser.parse(Lexer.lex(String.join("\n",
+                "LET x : DECIMAL = 1.5;",
+                "WHILE x != 1.5 DO",
+                "    IF x == 3 THEN",
+                "        x = x * (2 / 4);",
+                "    ELSE",
+                "        PRINT(\"x is\", x);",
+                "    END",
+                "END"
+        )));
+        String expected = String.join(System.lineSeparator(),
+                "public final class Main{",
+                "",
+                "private static final java.math.BigDecimal $const0=new java.math.BigDecimal(\"1.5\");",
+                "private static final java.math.BigDecimal $const1=new java.math.BigDecimal(\"3\");",
+                "",
+                "public static void main(String[] args){",
+                "try{",
+                "java.math.BigDecimal x=$const0;",
+                "while(x.compareTo($const0)!=0){",
+                "if(x.compareTo($const1)==0){",
+                "x=x.multiply(java.math.BigDecimal.valueOf((2L/4L)));",
+                "}else{",
+                "plc.compiler.ScriptRuntime.print(\"x is\",x);",
+                "}",
+                "}",
+                "}finally{",
+                "plc.compiler.ScriptRuntime.flush();",
+                "}",
+                "}",
+                "",
+                "}",
+                ""
+        );
+        CharSink compact = new CharSink();
+        Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard());
+        new Generator(compact, TypeSpecializer.analyze(ast), options.setCompact(true)).visit(ast);
+        Assertions.assertEquals(expected, compact.toString());
+        CharSink pretty = new CharSink();
+        new Generator(pretty, TypeSpecializer.analyze(ast), options.setCompact(false)).visit(ast);
+        Assertions.assertEquals(pretty.toString().split(System.lineSeparator(), -1).length,
+                compact.toString().split(System.lineSeparator(), -1).length);
+    }
+
+    @Test
+    void testCompactSigns() {
+        Ast.Expression.Binary ast = new Ast.Expression.Binary("-",
+                new Ast.Expression.Variable("x"),
+                new Ast.Expression.Binary("*",
+                        new Ast.Expression.Literal(BigInteger.valueOf(-1)),
+                        new Ast.Expression.Literal(new BigDecimal("-0.5"))
+                ));
+        CharSink sink = new CharSink();
+        new Generator(sink, null, new Generator.Options().setCompact(true)).visit(ast);
+        Assertions.assertEquals("x- -1*-0.5", sink.toString());
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder input = new StringBuilder("LET total : INTEGER = 0;\n");
+        for (int i = 0; i < 300; i++) {
+            input.append("LET i").append(i).append(" : INTEGER = ").append(i).append(";\n");
+            input.append("WHILE i").append(i).append(" != 0 DO\n");
+            for (int j = 0; j < (i % 7 == 0 ? 100 : 2); j++) {
+                input.append("    total = total + i").append(i).append(";\n");
+            }
+            input.append("    i").append(i).append(" = i").append(i).append(" - 1;\nEND\n");
+        }
+        Ast.Source ast = (Ast.Source) Parser.parse(Lexer.lex(input.toString()));
+        TypeSpecializer types = TypeSpecializer.analyze(ast);
+        CharSink expected = new CharSink();
+        new Generator(expected, types, new Generator.Options()).visit(ast);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CharSink actual = new CharSink();
+            new Generator(actual, types, new Generator.Options().setPool(pool)).visit(ast);
+            Assertions.assertEquals(expected.toString(), actual.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     private static void test(Ast ast, String expected) {
         StringWriter writer = new StringWriter();
         new Generator(new PrintWriter(writer)).visit(ast);
@@ -0,0 +1,227 @@
+package plc.compiler;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the Java source written by the {@link Generator} with javac in
+ * the current process, keeping both sources and class files in memory.
+ *
+ * One compiler and one standard file manager are shared by every call, so
+ * the classpath is only opened and indexed once. Several scripts can be
+ * compiled by a single javac task with {@link #compile(List)}; since every
+ * script declares a class named {@code Main}, script {@code n} of a batch is
+ * placed in package {@code scriptN}. The package declaration is added to the
+ * first line so line numbers are unchanged.
+ */
+public final class InProcessCompiler {
+
+    private static final List<String> OPTIONS = Arrays.asList("-proc:none", "-classpath", classpath());
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standardFileManager;
+
+    public InProcessCompiler() {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler is available; a JDK is required.");
+        }
+        standardFileManager = compiler.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Returns the class path of this process, plus the location of this
+     * class in case it was loaded by another class loader (such as a test
+     * launcher's), since generated code links against {@link ScriptRuntime}.
+     */
+    private static String classpath() {
+        String classpath = System.getProperty("java.class.path");
+        CodeSource source = InProcessCompiler.class.getProtectionDomain().getCodeSource();
+        if (source != null) {
+            try {
+                classpath = Paths.get(source.getLocation().toURI()) + File.pathSeparator + classpath;
+            } catch (URISyntaxException e) {
+                //not a file location, which javac could not read anyway
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * Generates and compiles the given source with specialized types and the
+     * standard {@link Builtins}, returning the {@code Main} class.
+     */
+    public Class<?> compile(Ast.Source source) throws ParseException {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        new Generator(out, TypeSpecializer.analyze(source), new Generator.Options().setBuiltins(Builtins.standard()))
+                .visit(source);
+        out.flush();
+        return compile(writer.toString());
+    }
+
+    /**
+     * Compiles a single generated source, returning its {@code Main} class.
+     */
+    public Class<?> compile(String source) throws CompilationException {
+        return compile(Arrays.asList(source)).get(0);
+    }
+
+    /**
+     * Compiles a batch of generated sources in one javac task, returning the
+     * {@code Main} class of each in order. If any source fails to compile, a
+     * {@link CompilationException} lists javac's errors.
+     */
+    public synchronized List<Class<?>> compile(List<String> sources) throws CompilationException {
+        List<JavaFileObject> files = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            files.add(new SourceFile("script" + i + "/Main", "package script" + i + "; " + sources.get(i)));
+        }
+        MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = compiler.getTask(null, fileManager, diagnostics, OPTIONS, null, files).call();
+        if (!success) {
+            StringBuilder message = new StringBuilder("Generated source failed to compile:");
+            List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic);
+                    message.append(System.lineSeparator()).append(diagnostic.getSource().getName())
+                            .append(':').append(diagnostic.getLineNumber())
+                            .append(": ").append(diagnostic.getMessage(null));
+                }
+            }
+            throw new CompilationException(message.toString(), errors);
+        }
+        ClassLoader loader = new MemoryClassLoader(fileManager.classes, InProcessCompiler.class.getClassLoader());
+        List<Class<?>> classes = new ArrayList<>();
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                classes.add(loader.loadClass("script" + i + ".Main"));
+            }
+        } catch (ClassNotFoundException e) {
+            throw new AssertionError(e);
+        }
+        return classes;
+    }
+
+    /**
+     * Runs the {@code main} method of a compiled class.
+     */
+    public static void run(Class<?> main, String... args) {
+        try {
+            main.getMethod("main", String[].class).invoke(null, (Object) args);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new AssertionError(e.getCause());
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        private SourceFile(String path, String source) {
+            super(URI.create("string:///" + path + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private ClassFile(String name) {
+            super(URI.create("bytes:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+    }
+
+    /**
+     * Reads sources and libraries through the shared file manager, but keeps
+     * compiled classes in memory.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ClassFile> classes = new HashMap<>();
+
+        private MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            ClassFile file = new ClassFile(className);
+            classes.put(className, file);
+            return file;
+        }
+
+        @Override
+        public void close() {
+            //the standard file manager is shared between compilations
+        }
+
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, ClassFile> classes;
+
+        private MemoryClassLoader(Map<String, ClassFile> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            ClassFile file = classes.get(name);
+            if (file == null) {
+                throw new ClassNotFoundException(name);
+            }
+            byte[] bytes = file.bytes.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class InProcessCompilerTests {
+
+    private static final InProcessCompiler COMPILER = new InProcessCompiler();
+
+    @Test
+    void testGeneratedSource() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.If(new Ast.Expression.Literal(true), Arrays.asList(), Arrays.asList())
+        ));
+        Class<?> main = COMPILER.compile(ast);
+        Assertions.assertEquals("script0.Main", main.getName());
+        InProcessCompiler.run(main);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testProgram(String input, String expected) {
+        Class<?> main = COMPILER.compile((Ast.Source) Parser.parse(Lexer.lex(input)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(bytes));
+        try {
+            InProcessCompiler.run(main);
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+        Assertions.assertEquals(expected, bytes.toString().trim());
+    }
+
+    private static Stream<Arguments> testProgram() {
+        return Stream.of(
+                Arguments.of("LET x : INTEGER = 7 / 2; LET s : STRING = \"x=\" + x; PRINT(x, s);", "3 x=3"),
+                Arguments.of(String.join("\n",
+                        "LET y : DECIMAL = 1.00 / 4;",
+                        "LET z : DECIMAL = y * 3 + 1;",
+                        "PRINT(y, z, y != 0.25);"
+                ), "0.25 1.75 false"),
+                Arguments.of(String.join("\n",
+                        "LET i : INTEGER = 0;",
+                        "LET sum : INTEGER;",
+                        "sum = 0;",
+                        "WHILE i != 5 DO",
+                        "    i = i + 1;",
+                        "    sum = sum + i * 100000000000;",
+                        "END",
+                        "PRINT(sum);"
+                ), "1500000000000")
+        );
+    }
+
+    @Test
+    void testBatch() {
+        List<Class<?>> classes = COMPILER.compile(Arrays.asList(
+                "public final class Main { public static int value() { return 1; } }",
+                "public final class Main { public static int value() { return 2; } }"
+        ));
+        Assertions.assertEquals(2, classes.size());
+        Assertions.assertNotEquals(classes.get(0), classes.get(1));
+        Assertions.assertEquals(1, value(classes.get(0)));
+        Assertions.assertEquals(2, value(classes.get(1)));
+    }
+
+    @Test
+    void testRun() {
+        Class<?> main = COMPILER.compile(String.join("\n",
+                "public final class Main {",
+                "    public static void main(String[] args) {",
+                "        throw new IllegalStateException(args[0]);",
+                "    }",
+                "}"
+        ));
+        IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class,
+                () -> InProcessCompiler.run(main, "ran"));
+        Assertions.assertEquals("ran", exception.getMessage());
+    }
+
+    @Test
+    void testErrors() {
+        CompilationException exception = Assertions.assertThrows(CompilationException.class,
+                () -> COMPILER.compile("public final class Main {\n    int x = ;\n}"));
+        Assertions.assertTrue(exception.getMessage().contains("Main.java:2"));
+        Assertions.assertEquals(2, exception.getDiagnostics().get(0).getLineNumber());
+    }
+
+    private static int value(Class<?> type) {
+        try {
+            return (Integer) type.getMethod("value").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
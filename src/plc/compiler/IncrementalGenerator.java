@@ -0,0 +1,184 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regenerates the Java source of a script after it changes, reusing the
+ * output of the previous run. The text written for every statement, nested
+ * or not, is recorded as a span of the output. When a new source is
+ * generated, a statement equal to one seen before (using the structural
+ * {@code equals} of {@link Ast}) is copied from the old output and
+ * re-indented if it moved to a different depth; only the others are
+ * rendered, and a changed {@code IF} or {@code WHILE} still reuses the
+ * unchanged statements in its bodies.
+ *
+ * Copying is only correct while a statement is written the same way
+ * wherever it appears, so the output is that of the
+ * {@link StreamingCompiler}: without type specialization, literal pooling
+ * or outlining, which all depend on the whole program. Instrumentation and
+ * source maps are not supported either, as both number or position the
+ * output of every statement within the whole file.
+ */
+public final class IncrementalGenerator {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The output of one statement. Spans are listed in the order they start,
+     * so the spans nested in a statement directly follow it.
+     */
+    private static final class Span {
+
+        private final Ast.Statement statement;
+        private final int start;
+        private final int indent;
+        private final int position;
+        private int end;
+        private int descendants;
+
+        private Span(Ast.Statement statement, int start, int indent, int position) {
+            this.statement = statement;
+            this.start = start;
+            this.indent = indent;
+            this.position = position;
+        }
+
+    }
+
+    private final Generator.Options options;
+    private CharSink output = new CharSink(16);
+    private List<Span> spans = Collections.emptyList();
+    private Map<Ast.Statement, Span> index = Collections.emptyMap();
+    private CharSink sink;
+    private List<Span> next;
+    private int reused;
+
+    public IncrementalGenerator(Generator.Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Generates the given source, reusing the output of the previous call,
+     * and returns the new output.
+     */
+    public CharSink generate(Ast.Source source) {
+        sink = new CharSink(output.length());
+        next = new ArrayList<>(spans.size());
+        reused = 0;
+        Generator generator = new Generator(sink, options, this);
+        generator.visitPrologue();
+        for (Ast.Statement statement : source.getStatements()) {
+            generator.visitMain(statement);
+        }
+        generator.visitEpilogue();
+        output = sink;
+        spans = next;
+        index = new HashMap<>();
+        for (Span span : spans) {
+            index.putIfAbsent(span.statement, span);
+        }
+        sink = null;
+        next = null;
+        return output;
+    }
+
+    /**
+     * Returns the output of the last call to {@link #generate}.
+     */
+    public CharSink getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns the number of statements copied by the last call to
+     * {@link #generate}, not counting those nested in copied statements.
+     */
+    int getReused() {
+        return reused;
+    }
+
+    /**
+     * Writes a statement at the given indentation, either by copying it from
+     * the previous output or with the generator's own rendering.
+     */
+    void visit(Ast.Statement ast, int indent, Runnable render) {
+        Span old = index.get(ast);
+        Span span = new Span(ast, sink.length(), indent, next.size());
+        next.add(span);
+        if (old != null) {
+            copy(old, span);
+            reused++;
+        } else {
+            render.run();
+        }
+        span.end = sink.length();
+        span.descendants = next.size() - span.position - 1;
+    }
+
+    /**
+     * Copies the text of an old span, changing the indentation of each line
+     * after the first by the difference in depth, and records the spans
+     * nested in it at their new offsets.
+     */
+    private void copy(Span old, Span span) {
+        int delta = span.indent - old.indent;
+        List<Integer> lines = new ArrayList<>();
+        if (delta == 0 || options.isCompact()) {
+            sink.append(output, old.start, old.end);
+        } else {
+            int from = old.start;
+            int i = old.start;
+            while (i < old.end) {
+                if (!startsWith(i, LINE_SEPARATOR)) {
+                    i++;
+                    continue;
+                }
+                sink.append(output, from, i);
+                lines.add(i);
+                i += LINE_SEPARATOR.length();
+                int spaces = 0;
+                while (output.charAt(i + spaces) == ' ') {
+                    spaces++;
+                }
+                sink.newline(spaces / 4 + delta);
+                i += spaces;
+                from = i;
+            }
+            sink.append(output, from, old.end);
+        }
+        for (int i = 1; i <= old.descendants; i++) {
+            Span nested = spans.get(old.position + i);
+            Span copy = new Span(nested.statement, offset(nested.start, old, span, lines), nested.indent + delta, next.size());
+            copy.end = offset(nested.end, old, span, lines);
+            copy.descendants = nested.descendants;
+            next.add(copy);
+        }
+    }
+
+    /**
+     * Maps an offset in an old span to the copy, which has 4 * delta more
+     * spaces after each line separator before the offset.
+     */
+    private static int offset(int offset, Span old, Span span, List<Integer> lines) {
+        int before = Collections.binarySearch(lines, offset);
+        before = before < 0 ? -before - 1 : before;
+        return span.start + offset - old.start + 4 * (span.indent - old.indent) * before;
+    }
+
+    private boolean startsWith(int index, String string) {
+        if (index + string.length() > output.length()) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (output.charAt(index + i) != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
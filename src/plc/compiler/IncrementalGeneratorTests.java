@@ -0,0 +1,99 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.StringReader;
+
+public class IncrementalGeneratorTests {
+
+    private static final String[] VERSIONS = {
+            String.join("\n",
+                    "LET i : INTEGER = 0;",
+                    "LET sum : INTEGER = 0;",
+                    "WHILE i != 10 DO",
+                    "    IF (i / 2) * 2 == i THEN",
+                    "        sum = sum + i;",
+                    "    ELSE",
+                    "        PRINT(\"odd\", i);",
+                    "    END",
+                    "    i = i + 1;",
+                    "END",
+                    "PRINT(sum);"
+            ),
+            //changes a nested statement
+            String.join("\n",
+                    "LET i : INTEGER = 0;",
+                    "LET sum : INTEGER = 0;",
+                    "WHILE i != 10 DO",
+                    "    IF (i / 2) * 2 == i THEN",
+                    "        sum = sum + (i * i);",
+                    "    ELSE",
+                    "        PRINT(\"odd\", i);",
+                    "    END",
+                    "    i = i + 1;",
+                    "END",
+                    "PRINT(sum);"
+            ),
+            //moves the loop one level deeper and an assignment one level out
+            String.join("\n",
+                    "LET i : INTEGER = 0;",
+                    "LET sum : INTEGER = 0;",
+                    "IF TRUE THEN",
+                    "    WHILE i != 10 DO",
+                    "        IF (i / 2) * 2 == i THEN",
+                    "            sum = sum + (i * i);",
+                    "        ELSE",
+                    "            PRINT(\"odd\", i);",
+                    "        END",
+                    "        i = i + 1;",
+                    "    END",
+                    "END",
+                    "sum = sum + (i * i);",
+                    "PRINT(sum);"
+            ),
+            //moves the loop back out after the nested spans were re-indented
+            String.join("\n",
+                    "LET i : INTEGER = 0;",
+                    "LET sum : INTEGER = 0;",
+                    "WHILE i != 10 DO",
+                    "    IF (i / 2) * 2 == i THEN",
+                    "        sum = sum + (i * i);",
+                    "    ELSE",
+                    "        PRINT(\"even\", i);",
+                    "    END",
+                    "    i = i + 1;",
+                    "END",
+                    "PRINT(sum);"
+            ),
+            ""
+    };
+
+    private static final int[] REUSED = {0, 5, 5, 5, 0};
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testVersions(boolean compact) {
+        Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard()).setCompact(compact);
+        IncrementalGenerator generator = new IncrementalGenerator(options);
+        for (int i = 0; i < VERSIONS.length; i++) {
+            CharSink expected = new CharSink();
+            StreamingCompiler.compile(new StringReader(VERSIONS[i]), expected, options);
+            String actual = generator.generate((Ast.Source) Parser.parse(Lexer.lex(VERSIONS[i]))).toString();
+            Assertions.assertEquals(expected.toString(), actual, "version " + i);
+            Assertions.assertEquals(REUSED[i], generator.getReused(), "version " + i);
+        }
+    }
+
+    @Test
+    void testUnsupportedOptions() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(VERSIONS[0]));
+        Assertions.assertThrows(AssertionError.class, () -> new IncrementalGenerator(
+                new Generator.Options().setSourceMap(new SourceMap())).generate(source));
+        Assertions.assertThrows(AssertionError.class, () -> new IncrementalGenerator(
+                new Generator.Options().setInstrumented(true)).generate(source));
+    }
+
+}
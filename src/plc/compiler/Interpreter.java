@@ -0,0 +1,225 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Executes an AST directly instead of generating Java for it. Statements
+ * return {@code null} and expressions return their value, see {@link Values}
+ * for the semantics of each operation.
+ *
+ * Function calls are looked up by name in a {@link Functions} registry.
+ *
+ * Given a compile threshold, the interpreter is the first tier of a tiered
+ * runtime: it counts the iterations of each {@code WHILE}, over all its runs,
+ * and once a loop reaches the threshold compiles it with the
+ * {@link JvmCompiler}. The running loop continues in the compiled class from
+ * its next iteration, and later runs of it start there. The variables the
+ * loop uses from enclosing scopes are carried over from this interpreter's
+ * {@link Scope} and written back when the loop ends, normally or by
+ * throwing. Loops that cannot be compiled keep being interpreted.
+ */
+public final class Interpreter implements Ast.Visitor<Object> {
+
+    /**
+     * A loop compiled with the variables from enclosing scopes it uses.
+     */
+    private static final class CompiledLoop {
+
+        private final JvmCompiler.Program program;
+        private final List<String> carried;
+
+        private CompiledLoop(JvmCompiler.Program program, List<String> carried) {
+            this.program = program;
+            this.carried = carried;
+        }
+
+    }
+
+    private final Functions functions;
+    private final int threshold;
+    private final Map<Ast.Statement.While, Integer> iterations = new IdentityHashMap<>();
+    private final Map<Ast.Statement.While, CompiledLoop> compiled = new IdentityHashMap<>();
+    private Scope scope = new Scope(null);
+
+    public Interpreter(Functions functions) {
+        this(functions, 0);
+    }
+
+    /**
+     * Creates an interpreter that compiles loops after the given number of
+     * iterations, or never if it is 0.
+     */
+    public Interpreter(Functions functions, int threshold) {
+        this.functions = functions;
+        this.threshold = threshold;
+    }
+
+    public Interpreter(PrintWriter out) {
+        this(new Functions(out));
+    }
+
+    public Functions getFunctions() {
+        return functions;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the number of loops that have been compiled.
+     */
+    int getCompiledLoops() {
+        return compiled.size();
+    }
+
+    private void execute(List<Ast.Statement> statements) {
+        Scope parent = scope;
+        scope = new Scope(parent);
+        try {
+            for (Ast.Statement statement : statements) {
+                visit(statement);
+            }
+        } finally {
+            scope = parent;
+        }
+    }
+
+    @Override
+    public Object visit(Ast.Source ast) {
+        for (Ast.Statement statement : ast.getStatements()) {
+            visit(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Declaration ast) {
+        Object value = ast.getValue().isPresent() ? Values.coerce(ast.getType(), visit(ast.getValue().get())) : null;
+        scope.define(ast.getName(), ast.getType(), value);
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.Assignment ast) {
+        Scope.Variable variable = scope.lookup(ast.getName());
+        variable.setValue(Values.coerce(variable.getType(), visit(ast.getExpression())));
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.If ast) {
+        if (Values.requireBoolean(visit(ast.getCondition()))) {
+            execute(ast.getThenStatements());
+        } else {
+            execute(ast.getElseStatements());
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Statement.While ast) {
+        if (compiled.containsKey(ast)) {
+            return run(compiled.get(ast));
+        }
+        while (Values.requireBoolean(visit(ast.getCondition()))) {
+            execute(ast.getStatements());
+            if (threshold > 0 && iterations.merge(ast, 1, Integer::sum) == threshold && compile(ast)) {
+                return run(compiled.get(ast));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a loop on its own, preceded by declarations of the variables
+     * it uses from enclosing scopes, returning whether it succeeded.
+     */
+    private boolean compile(Ast.Statement.While ast) {
+        Variables variables = Variables.of(ast);
+        Set<String> names = new TreeSet<>(variables.getReads());
+        names.addAll(variables.getWrites());
+        List<String> carried = new ArrayList<>();
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (String name : names) {
+            if (scope.find(name) != null) {
+                carried.add(name);
+            }
+        }
+        for (String name : carried) {
+            statements.add(new Ast.Statement.Declaration(name, scope.find(name).getType(), Optional.empty()));
+        }
+        statements.add(ast);
+        try {
+            compiled.put(ast, new CompiledLoop(JvmCompiler.compile(new Ast.Source(statements), carried.size()), carried));
+            return true;
+        } catch (ParseException e) {
+            //too large for a method, or refers to variables that are not in scope
+            return false;
+        }
+    }
+
+    private Object run(CompiledLoop loop) {
+        Object[] values = new Object[loop.carried.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = scope.lookup(loop.carried.get(i)).getValue();
+        }
+        try {
+            loop.program.run(functions, values);
+        } finally {
+            for (int i = 0; i < values.length; i++) {
+                scope.lookup(loop.carried.get(i)).setValue(values[i]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Literal ast) {
+        return ast.getValue();
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Binary ast) {
+        return Values.binary(ast.getOperator(), visit(ast.getLeft()), visit(ast.getRight()));
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Variable ast) {
+        Object value = scope.lookup(ast.getName()).getValue();
+        if (value == null) {
+            throw new EvaluationException("Variable " + ast.getName() + " is not initialized.");
+        }
+        return value;
+    }
+
+    @Override
+    public Object visit(Ast.Expression.Function ast) {
+        Function<List<Object>, Object> function = functions.lookup(ast.getName());
+        List<Object> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        return function.apply(arguments);
+    }
+
+}
@@ -0,0 +1,144 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+public class InterpreterTests {
+
+    @Test
+    void testPrint() {
+        test("PRINT(\"Hello, World!\");", "Hello, World!");
+    }
+
+    @Test
+    void testArithmetic() {
+        test(String.join("\n",
+                "LET x : INTEGER = 7 / 2;",
+                "LET y : DECIMAL = 1.00 / 4;",
+                "PRINT(x, y, \"x=\" + x);"
+        ), "3 0.25 x=3");
+    }
+
+    @Test
+    void testWhile() {
+        test(String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET sum : INTEGER = 0;",
+                "WHILE i != 5 DO",
+                "    i = i + 1;",
+                "    sum = sum + i;",
+                "END",
+                "PRINT(sum);"
+        ), "15");
+    }
+
+    @Test
+    void testIf() {
+        test(String.join("\n",
+                "LET score : INTEGER = 9;",
+                "IF score == 9.0 THEN",
+                "    LET grade : STRING = \"A\";",
+                "    PRINT(grade);",
+                "ELSE",
+                "    PRINT(\"B\");",
+                "END"
+        ), "A");
+    }
+
+    @Test
+    void testFunctionRegistry() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()));
+        interpreter.getFunctions().define("SQUARE", arguments -> ((BigInteger) arguments.get(0)).pow(2));
+        interpreter.visit(Parser.parse(Lexer.lex("LET x : INTEGER = SQUARE(12);")));
+        Assertions.assertEquals(BigInteger.valueOf(144), interpreter.getScope().lookup("x").getValue());
+    }
+
+    @Test
+    void testDecimalWidening() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()));
+        interpreter.visit(Parser.parse(Lexer.lex("LET x : DECIMAL = 2;")));
+        Assertions.assertEquals(new BigDecimal(2), interpreter.getScope().lookup("x").getValue());
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(EvaluationException.class, () -> test("x = 1;", ""));
+        Assertions.assertThrows(EvaluationException.class, () -> test("LET x : INTEGER; PRINT(x);", ""));
+        Assertions.assertThrows(EvaluationException.class, () -> test("IF 1 THEN END", ""));
+        Assertions.assertThrows(EvaluationException.class, () -> test("PRINT(1 / 0);", ""));
+        Assertions.assertThrows(EvaluationException.class, () -> test("LET x : INTEGER = \"one\";", ""));
+    }
+
+    @Test
+    void testTiered() {
+        String input = String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET total : DECIMAL;",
+                "LET text : STRING = \"\";",
+                "total = 0.5;",
+                "WHILE i != 20 DO",
+                "    LET j : INTEGER = 0;",
+                "    WHILE j != i DO",
+                "        total = total + j;",
+                "        j = j + 1;",
+                "    END",
+                "    IF i == 10 THEN",
+                "        PRINT(\"halfway\", total);",
+                "        text = text + i;",
+                "    END",
+                "    i = i + 1;",
+                "END",
+                "PRINT(i, total, text);"
+        );
+        StringWriter expected = new StringWriter();
+        Interpreter reference = new Interpreter(new PrintWriter(expected, true));
+        reference.visit(Parser.parse(Lexer.lex(input)));
+        StringWriter actual = new StringWriter();
+        Interpreter interpreter = new Interpreter(new Functions(new PrintWriter(actual, true)), 5);
+        interpreter.visit(Parser.parse(Lexer.lex(input)));
+        Assertions.assertEquals(expected.toString(), actual.toString());
+        Assertions.assertEquals(2, interpreter.getCompiledLoops());
+        for (String name : new String[] {"i", "total", "text"}) {
+            Assertions.assertEquals(reference.getScope().lookup(name).getValue(),
+                    interpreter.getScope().lookup(name).getValue());
+        }
+    }
+
+    @Test
+    void testTieredErrors() {
+        Interpreter interpreter = new Interpreter(new Functions(new PrintWriter(new StringWriter())), 2);
+        EvaluationException exception = Assertions.assertThrows(EvaluationException.class, () -> interpreter.visit(
+                Parser.parse(Lexer.lex("LET i : INTEGER = 0; LET x : INTEGER; WHILE i != 5 DO i = i + 1; END PRINT(x);"))));
+        Assertions.assertEquals("Variable x is not initialized.", exception.getMessage());
+        Assertions.assertThrows(EvaluationException.class, () -> interpreter.visit(
+                Parser.parse(Lexer.lex("LET n : INTEGER = 0; WHILE n != 5 DO n = n + 1; IF n == 4 THEN PRINT(1 / 0); END END"))));
+    }
+
+    @Test
+    void testTieredErrorState() {
+        String input = "LET n : INTEGER = 0; LET total : INTEGER = 0; WHILE n != 10 DO n = n + 1; total = total + n; IF n == 7 THEN PRINT(1 / 0); END END";
+        Interpreter reference = new Interpreter(new PrintWriter(new StringWriter()));
+        Assertions.assertThrows(EvaluationException.class, () -> reference.visit(Parser.parse(Lexer.lex(input))));
+        Interpreter interpreter = new Interpreter(new Functions(new PrintWriter(new StringWriter())), 2);
+        Assertions.assertThrows(EvaluationException.class, () -> interpreter.visit(Parser.parse(Lexer.lex(input))));
+        Assertions.assertEquals(1, interpreter.getCompiledLoops());
+        for (String name : new String[] {"n", "total"}) {
+            Assertions.assertEquals(reference.getScope().lookup(name).getValue(),
+                    interpreter.getScope().lookup(name).getValue());
+        }
+    }
+
+    private static void test(String input, String expected) {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        new Interpreter(out).visit(Parser.parse(Lexer.lex(input)));
+        out.flush();
+        Assertions.assertEquals(expected, writer.toString().trim());
+    }
+
+}
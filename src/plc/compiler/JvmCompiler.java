@@ -0,0 +1,739 @@
+package plc.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiles an AST straight to JVM bytecode and loads it in-process, skipping
+ * both Java source and javac. The result is a class {@code plc.compiler.Main}
+ * with a single method:
+ *
+ * <pre>
+ * {@code public static void run(Object[] constants, Function[] functions, Object[] variables)}
+ * </pre>
+ *
+ * Variables are JVM locals (numbered from their {@link Resolver} slots) and
+ * every operation either calls the JDK directly, when {@link TypeInference}
+ * knows the operand types, or calls into {@link Values} so the semantics
+ * match the {@link Interpreter}. Literals that cannot live in the class's
+ * constant pool are passed in {@code constants}. {@code variables} carries
+ * the state of a loop compiled on its own (see {@link #compile(Ast.Source,
+ * int)}) in and out of the method.
+ *
+ * Classes target version 49 so they need no stack map frames. They are
+ * defined as hidden classes where the JVM supports them (Java 15+), and
+ * otherwise through a class loader of their own; either way a class can be
+ * unloaded once its {@link Program} is no longer reachable.
+ */
+public final class JvmCompiler implements Ast.Visitor<Void> {
+
+    private static final int VERSION = 49;
+    private static final int FIRST_VARIABLE = 3;
+
+    /**
+     * A loaded program, which may be run any number of times.
+     */
+    public static final class Program {
+
+        private final Method run;
+        private final Object[] constants;
+        private final String[] functions;
+
+        private Program(Method run, Object[] constants, String[] functions) {
+            this.run = run;
+            this.constants = constants;
+            this.functions = functions;
+        }
+
+        public Class<?> getType() {
+            return run.getDeclaringClass();
+        }
+
+        /**
+         * Runs the program, calling functions from the given registry.
+         */
+        public void run(Functions registry) {
+            run(registry, new Object[0]);
+        }
+
+        /**
+         * Runs the program with the values of its carried variables, which
+         * are replaced by their final values, whether or not it throws.
+         */
+        public void run(Functions registry, Object[] variables) {
+            Function<?, ?>[] bound = new Function<?, ?>[functions.length];
+            for (int i = 0; i < functions.length; i++) {
+                try {
+                    bound[i] = registry.lookup(functions[i]);
+                } catch (EvaluationException e) {
+                    bound[i] = arguments -> {
+                        throw e;
+                    };
+                }
+            }
+            try {
+                run.invoke(null, constants, bound, variables);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new AssertionError(e.getCause());
+            }
+        }
+
+    }
+
+    private final Resolver resolver;
+    private final TypeInference inference;
+    private final ConstantPool pool = new ConstantPool();
+    private final Code code = new Code();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final List<String> functions = new ArrayList<>();
+    private final Map<String, Integer> functionIndices = new HashMap<>();
+    private final Set<Ast.Statement.Declaration> uninitialized = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int stack = 0;
+    private int maxStack = 0;
+
+    private JvmCompiler(Resolver resolver) {
+        this.resolver = resolver;
+        this.inference = new TypeInference(resolver, Collections.emptyMap());
+    }
+
+    /**
+     * Compiles and loads the given source.
+     */
+    public static Program compile(Ast.Source source) throws ParseException {
+        return compile(source, 0);
+    }
+
+    /**
+     * Compiles and loads the given source, whose first {@code carried}
+     * statements are declarations without values. Rather than starting out
+     * uninitialized, these variables are read from the array passed to
+     * {@link Program#run(Functions, Object[])} and written back to it at the
+     * end, even if the program throws, so a loop that started in the
+     * {@link Interpreter} can continue in the compiled class.
+     */
+    public static Program compile(Ast.Source source, int carried) throws ParseException {
+        JvmCompiler compiler = new JvmCompiler(Resolver.resolve(source));
+        byte[] bytes = compiler.generate(source, carried);
+        try {
+            Method run = define(bytes).getMethod("run", Object[].class, Function[].class, Object[].class);
+            return new Program(run, compiler.constants.toArray(), compiler.functions.toArray(new String[0]));
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private byte[] generate(Ast.Source source, int carried) {
+        int locals = FIRST_VARIABLE + resolver.getFrameSize();
+        for (int local = FIRST_VARIABLE; local < locals; local++) {
+            op(0x01, 1); //aconst_null
+            store(local);
+        }
+        List<Ast.Statement> statements = source.getStatements();
+        for (int i = 0; i < carried; i++) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statements.get(i);
+            uninitialized.add(declaration);
+            load(2);
+            pushInt(i);
+            op(0x32, -1); //aaload
+            store(FIRST_VARIABLE + resolver.getSlot(declaration));
+        }
+        int start = code.size();
+        statements.subList(carried, statements.size()).forEach(this::visit);
+        int end = code.size();
+        storeCarried(statements, carried);
+        op(0xB1, 0); //return
+        int handler = -1;
+        if (carried > 0 && end > start) {
+            //carried variables are also written back when the program throws
+            handler = code.size();
+            stack = 1;
+            maxStack = Math.max(maxStack, stack);
+            storeCarried(statements, carried);
+            op(0xBF, -1); //athrow
+        }
+        if (code.size() > 65535) {
+            throw new ParseException("Program is too large to compile to a single method.", -1);
+        }
+        int thisClass = pool.classRef("plc/compiler/Main");
+        int superClass = pool.classRef("java/lang/Object");
+        int name = pool.utf8("run");
+        int descriptor = pool.utf8("([Ljava/lang/Object;[Ljava/util/function/Function;[Ljava/lang/Object;)V");
+        int codeAttribute = pool.utf8("Code");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            pool.write(out);
+            out.writeShort(0x0031); //public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); //interfaces
+            out.writeShort(0); //fields
+            out.writeShort(1); //methods
+            out.writeShort(0x0009); //public static
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1); //attributes
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.size() + (handler >= 0 ? 8 : 0));
+            out.writeShort(maxStack);
+            out.writeShort(locals);
+            out.writeInt(code.size());
+            code.write(out);
+            if (handler >= 0) {
+                out.writeShort(1); //exception table
+                out.writeShort(start);
+                out.writeShort(end);
+                out.writeShort(handler);
+                out.writeShort(0); //any
+            } else {
+                out.writeShort(0); //exception table
+            }
+            out.writeShort(0); //code attributes
+            out.writeShort(0); //class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Stores the carried variables, the first declarations of the source,
+     * back into the {@code variables} array.
+     */
+    private void storeCarried(List<Ast.Statement> statements, int carried) {
+        for (int i = 0; i < carried; i++) {
+            load(2);
+            pushInt(i);
+            load(FIRST_VARIABLE + resolver.getSlot(statements.get(i)));
+            op(0x53, -3); //aastore
+        }
+    }
+
+    /**
+     * Defines the class as a hidden class if supported, or in a new class
+     * loader otherwise.
+     */
+    private static Class<?> define(byte[] bytes) {
+        Method defineHiddenClass;
+        Object options;
+        try {
+            Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(option, 0);
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass",
+                    byte[].class, boolean.class, options.getClass());
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return new ScriptClassLoader(JvmCompiler.class.getClassLoader()).define(bytes);
+        }
+        try {
+            return ((MethodHandles.Lookup) defineHiddenClass.invoke(MethodHandles.lookup(), bytes, true, options)).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new AssertionError(e.getCause());
+        }
+    }
+
+    private static final class ScriptClassLoader extends ClassLoader {
+
+        private ScriptClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass("plc.compiler.Main", bytes, 0, bytes.length);
+        }
+
+    }
+
+    private void op(int opcode, int effect) {
+        code.u1(opcode);
+        stack += effect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void load(int local) {
+        if (local < 256) {
+            op(0x19, 1); //aload
+            code.u1(local);
+        } else {
+            op(0xC4, 0); //wide
+            op(0x19, 1);
+            code.u2(local);
+        }
+    }
+
+    private void store(int local) {
+        if (local < 256) {
+            op(0x3A, -1); //astore
+            code.u1(local);
+        } else {
+            op(0xC4, 0); //wide
+            op(0x3A, -1);
+            code.u2(local);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(0x03 + value, 1); //iconst_<n>
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(0x10, 1); //bipush
+            code.u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(0x11, 1); //sipush
+            code.u2(value);
+        } else {
+            ldc(pool.integer(value));
+        }
+    }
+
+    private void pushString(String value) {
+        ldc(pool.string(value));
+    }
+
+    private void ldc(int index) {
+        if (index < 256) {
+            op(0x12, 1); //ldc
+            code.u1(index);
+        } else {
+            op(0x13, 1); //ldc_w
+            code.u2(index);
+        }
+    }
+
+    private void checkcast(String type) {
+        op(0xC0, 0);
+        code.u2(pool.classRef(type));
+    }
+
+    private void invokestatic(String owner, String name, String descriptor, int effect) {
+        op(0xB8, effect);
+        code.u2(pool.methodRef(owner, name, descriptor));
+    }
+
+    private void invokevirtual(String owner, String name, String descriptor, int effect) {
+        op(0xB6, effect);
+        code.u2(pool.methodRef(owner, name, descriptor));
+    }
+
+    private void invokeinterface(String owner, String name, String descriptor, int arguments, int effect) {
+        op(0xB9, effect);
+        code.u2(pool.interfaceMethodRef(owner, name, descriptor));
+        code.u1(arguments + 1);
+        code.u1(0);
+    }
+
+    /**
+     * Emits a branch with a placeholder offset, returning its position.
+     */
+    private int branch(int opcode, int effect) {
+        int position = code.size();
+        op(opcode, effect);
+        code.u2(0);
+        return position;
+    }
+
+    private void patch(int position) {
+        code.patch(position + 1, offset(position, code.size()));
+    }
+
+    private int offset(int from, int to) {
+        int offset = to - from;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new ParseException("Program is too large to compile to a single method.", -1);
+        }
+        return offset;
+    }
+
+    private int constant(Object value) {
+        return constantIndices.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    /**
+     * Emits a value stored into a variable of the given type.
+     */
+    private void value(String type, Ast.Expression value) {
+        if (type.equals(inference.visit(value))) {
+            visit(value);
+        } else {
+            pushString(type);
+            visit(value);
+            invokestatic("plc/compiler/Values", "coerce", "(Ljava/lang/String;Ljava/lang/Object;)Ljava/lang/Object;", -1);
+        }
+    }
+
+    /**
+     * Emits a condition, leaving an int (0 for false) on the stack.
+     */
+    private void condition(Ast.Expression condition) {
+        visit(condition);
+        if ("BOOLEAN".equals(inference.visit(condition))) {
+            checkcast("java/lang/Boolean");
+            invokevirtual("java/lang/Boolean", "booleanValue", "()Z", 0);
+        } else {
+            invokestatic("plc/compiler/Values", "requireBoolean", "(Ljava/lang/Object;)Z", 0);
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        op(0x57, -1); //pop
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        if (ast.getValue().isPresent()) {
+            value(ast.getType(), ast.getValue().get());
+        } else {
+            uninitialized.add(ast);
+            op(0x01, 1); //aconst_null
+        }
+        store(FIRST_VARIABLE + resolver.getSlot(ast));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        value(resolver.getDeclaration(ast).getType(), ast.getExpression());
+        store(FIRST_VARIABLE + resolver.getSlot(ast));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        condition(ast.getCondition());
+        int elseBranch = branch(0x99, -1); //ifeq
+        ast.getThenStatements().forEach(this::visit);
+        if (ast.getElseStatements().isEmpty()) {
+            patch(elseBranch);
+        } else {
+            int endBranch = branch(0xA7, 0); //goto
+            patch(elseBranch);
+            ast.getElseStatements().forEach(this::visit);
+            patch(endBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        int start = code.size();
+        condition(ast.getCondition());
+        int endBranch = branch(0x99, -1); //ifeq
+        ast.getStatements().forEach(this::visit);
+        int position = code.size();
+        op(0xA7, 0); //goto
+        code.u2(offset(position, start));
+        patch(endBranch);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object value = ast.getValue();
+        if (value instanceof String && ((String) value).length() < 0x4000) {
+            pushString((String) value);
+        } else if (value instanceof Boolean) {
+            op(0xB2, 1); //getstatic
+            code.u2(pool.fieldRef("java/lang/Boolean", (Boolean) value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;"));
+        } else {
+            load(0);
+            pushInt(constant(value));
+            op(0x32, -1); //aaload
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        String left = inference.visit(ast.getLeft());
+        String right = inference.visit(ast.getRight());
+        String operator = ast.getOperator();
+        if ("INTEGER".equals(left) && "INTEGER".equals(right)) {
+            integer(ast);
+        } else if ("DECIMAL".equals(left) && "DECIMAL".equals(right) && "+-*".contains(operator)) {
+            arithmetic("java/math/BigDecimal", ast);
+        } else if ("STRING".equals(left) && "STRING".equals(right) && operator.equals("+")) {
+            visit(ast.getLeft());
+            checkcast("java/lang/String");
+            visit(ast.getRight());
+            checkcast("java/lang/String");
+            invokevirtual("java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", -1);
+        } else {
+            pushString(operator);
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            invokestatic("plc/compiler/Values", "binary",
+                    "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", -2);
+        }
+        return null;
+    }
+
+    private void integer(Ast.Expression.Binary ast) {
+        switch (ast.getOperator()) {
+            case "==":
+            case "!=":
+                visit(ast.getLeft());
+                visit(ast.getRight());
+                invokevirtual("java/lang/Object", "equals", "(Ljava/lang/Object;)Z", -1);
+                if (ast.getOperator().equals("!=")) {
+                    op(0x04, 1); //iconst_1
+                    op(0x82, -1); //ixor
+                }
+                invokestatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+                break;
+            case "/":
+                pushString("/");
+                visit(ast.getLeft());
+                checkcast("java/math/BigInteger");
+                visit(ast.getRight());
+                checkcast("java/math/BigInteger");
+                invokestatic("plc/compiler/Values", "integer",
+                        "(Ljava/lang/String;Ljava/math/BigInteger;Ljava/math/BigInteger;)Ljava/math/BigInteger;", -2);
+                break;
+            default:
+                arithmetic("java/math/BigInteger", ast);
+        }
+    }
+
+    private void arithmetic(String type, Ast.Expression.Binary ast) {
+        String method;
+        switch (ast.getOperator()) {
+            case "+":
+                method = "add";
+                break;
+            case "-":
+                method = "subtract";
+                break;
+            case "*":
+                method = "multiply";
+                break;
+            default:
+                throw new AssertionError(ast.getOperator());
+        }
+        visit(ast.getLeft());
+        checkcast(type);
+        visit(ast.getRight());
+        checkcast(type);
+        invokevirtual(type, method, "(L" + type + ";)L" + type + ";", -1);
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        load(FIRST_VARIABLE + resolver.getSlot(ast));
+        if (uninitialized.contains(resolver.getDeclaration(ast))) {
+            pushString(ast.getName());
+            invokestatic("plc/compiler/Values", "requireInitialized",
+                    "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        load(1);
+        pushInt(functionIndices.computeIfAbsent(ast.getName(), name -> {
+            functions.add(name);
+            return functions.size() - 1;
+        }));
+        op(0x32, -1); //aaload
+        op(0xBB, 1); //new
+        code.u2(pool.classRef("java/util/ArrayList"));
+        op(0x59, 1); //dup
+        pushInt(ast.getArguments().size());
+        op(0xB7, -2); //invokespecial
+        code.u2(pool.methodRef("java/util/ArrayList", "<init>", "(I)V"));
+        for (Ast.Expression argument : ast.getArguments()) {
+            op(0x59, 1); //dup
+            visit(argument);
+            invokeinterface("java/util/List", "add", "(Ljava/lang/Object;)Z", 1, -1);
+            op(0x57, -1); //pop
+        }
+        invokeinterface("java/util/function/Function", "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", 1, -1);
+        return null;
+    }
+
+    /**
+     * A growable buffer of method code.
+     */
+    private static final class Code {
+
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+
+        private int size() {
+            return size;
+        }
+
+        private void u1(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void patch(int position, int value) {
+            bytes[position] = (byte) (value >> 8);
+            bytes[position + 1] = (byte) value;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+    }
+
+    /**
+     * The class file constant pool, with entries deduplicated by content.
+     */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        /**
+         * Returns the index of a new entry, whose count must fit in the u2
+         * written to the class file.
+         */
+        private int next() {
+            if (count >= 65535) {
+                throw new ParseException("Program has too many constants to compile to a single class.", -1);
+            }
+            return count++;
+        }
+
+        private int utf8(String value) {
+            Integer index = indices.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            indices.put("U" + value, count);
+            return next();
+        }
+
+        /**
+         * Adds an entry made of a tag and one or two constant pool indices.
+         */
+        private int entry(int tag, int first, int second) {
+            String key = tag + ":" + first + ":" + second;
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(tag);
+                out.writeShort(first);
+                if (second >= 0) {
+                    out.writeShort(second);
+                }
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            indices.put(key, count);
+            return next();
+        }
+
+        private int integer(int value) {
+            Integer index = indices.get("I" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(3);
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            indices.put("I" + value, count);
+            return next();
+        }
+
+        private int classRef(String name) {
+            return entry(7, utf8(name), -1);
+        }
+
+        private int string(String value) {
+            return entry(8, utf8(value), -1);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            return entry(12, utf8(name), utf8(descriptor));
+        }
+
+        private int fieldRef(String owner, String name, String descriptor) {
+            return entry(9, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int methodRef(String owner, String name, String descriptor) {
+            return entry(10, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int interfaceMethodRef(String owner, String name, String descriptor) {
+            return entry(11, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeShort(count);
+            bytes.writeTo(out);
+        }
+
+    }
+
+}
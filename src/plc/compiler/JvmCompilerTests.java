@@ -0,0 +1,102 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+/**
+ * Checks that programs compiled to JVM classes behave exactly like the
+ * {@link Interpreter}.
+ */
+public class JvmCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testProgram(String name, String input) {
+        StringWriter expected = new StringWriter();
+        PrintWriter expectedOut = new PrintWriter(expected);
+        new Interpreter(expectedOut).visit(Parser.parse(Lexer.lex(input)));
+        expectedOut.flush();
+        Assertions.assertEquals(expected.toString(), run(input));
+    }
+
+    private static Stream<Arguments> testProgram() {
+        return Stream.of(
+                Arguments.of("Print", "PRINT(\"Hello, World!\");"),
+                Arguments.of("Arithmetic", String.join("\n",
+                        "LET x : INTEGER = 7 / 2;",
+                        "LET y : DECIMAL = 1.00 / 4;",
+                        "LET z : DECIMAL = y * 3 + x;",
+                        "LET s : STRING = \"x=\" + x;",
+                        "PRINT(x, y, z, s + \"!\", x == 3.0, y != 0.25, TRUE);"
+                )),
+                Arguments.of("Uninitialized", String.join("\n",
+                        "LET x : INTEGER;",
+                        "x = 5;",
+                        "x = x * (x - 1);",
+                        "PRINT(x);"
+                )),
+                Arguments.of("Loop", String.join("\n",
+                        "LET i : INTEGER = 0;",
+                        "LET sum : INTEGER = 0;",
+                        "WHILE i != 100 DO",
+                        "    LET square : INTEGER = i * i;",
+                        "    IF (i / 2) * 2 == i THEN",
+                        "        sum = sum + square;",
+                        "    ELSE",
+                        "        sum = sum - i;",
+                        "    END",
+                        "    i = i + 1;",
+                        "END",
+                        "PRINT(sum, i);"
+                ))
+        );
+    }
+
+    @Test
+    void testRepeatedRuns() {
+        JvmCompiler.Program program = JvmCompiler.compile(
+                (Ast.Source) Parser.parse(Lexer.lex("LET x : INTEGER = 1; x = x + 1; PRINT(x);")));
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        program.run(new Functions(out));
+        program.run(new Functions(out));
+        out.flush();
+        Assertions.assertEquals("2" + System.lineSeparator() + "2" + System.lineSeparator(), writer.toString());
+    }
+
+    @Test
+    void testTooManyConstants() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 33000; i++) {
+            input.append("PRINT(\"s").append(i).append("\");\n");
+        }
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> JvmCompiler.compile((Ast.Source) Parser.parse(Lexer.lex(input.toString()))));
+        Assertions.assertTrue(exception.getMessage().contains("too many constants"), exception.getMessage());
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(ParseException.class, () -> run("PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("UNKNOWN();"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("LET x : INTEGER; PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("PRINT(1 / 0);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("WHILE 1 DO END"));
+    }
+
+    private static String run(String input) {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        JvmCompiler.compile((Ast.Source) Parser.parse(Lexer.lex(input))).run(new Functions(out));
+        out.flush();
+        return writer.toString();
+    }
+
+}
@@ -1,6 +1,10 @@
 package plc.compiler;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -24,6 +28,14 @@ public final class Lexer {
         chars = new CharStream(input);
     }
 
+    /**
+     * Creates a lexer that reads its input as needed, so only the current
+     * token and a chunk of lookahead are held in memory.
+     */
+    Lexer(Reader input) {
+        chars = new CharStream(input);
+    }
+
     /**
      * Lexes the input and returns the list of tokens.
      */
@@ -38,14 +50,25 @@ public final class Lexer {
      */
     List<Token> lex() throws ParseException {
         List<Token> tokens = new ArrayList<>();
+        for (Token token = next(); token != null; token = next()) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Skips whitespace and lexes the next token, returning {@code null} at
+     * the end of the input.
+     */
+    Token next() throws ParseException {
         while (chars.has(0)) {
             if (match("\\s")) {
                 chars.skip();
                 continue;
             }
-            tokens.add(lexToken());
+            return lexToken();
         }
-        return tokens;
+        return null;
     }
 
     /**
@@ -188,15 +211,63 @@ public final class Lexer {
      * This is basically a sequence of characters. The index is used to maintain
      * where in the input string the lexer currently is, and the builder
      * accumulates characters into the literal value for the next token.
+     *
+     * When reading from a {@link Reader}, the input is a window starting at
+     * {@code offset} in the whole input, which is refilled a chunk at a time
+     * and only keeps characters from the start of the current token.
      */
      public static final class CharStream {
 
-        final String input;
+        private static final int CHUNK = 8192;
+
+        /**
+         * The window of the input being lexed, from the start of the current
+         * token; {@code chars[i]} is the character at {@code offset + i}.
+         */
+        char[] chars;
+        int count;
+        Reader reader;
+        int offset = 0;
         int index = 0;
         int length = 0;
 
         CharStream(String input) {
-            this.input = input;
+            this.chars = input.toCharArray();
+            this.count = chars.length;
+        }
+
+        CharStream(Reader reader) {
+            this.chars = new char[CHUNK];
+            this.reader = reader;
+        }
+
+        /**
+         * Reads until the window extends to the given index of the input, or
+         * the input ends. Characters before the current token are dropped
+         * when the window is full, and it grows when a token fills it.
+         */
+        private void fill(int end) {
+            while (reader != null && offset + count < end) {
+                int start = index - length - offset;
+                if (count == chars.length && start > 0) {
+                    System.arraycopy(chars, start, chars, 0, count - start);
+                    count -= start;
+                    offset += start;
+                } else if (count == chars.length) {
+                    chars = Arrays.copyOf(chars, 2 * chars.length);
+                }
+                int read;
+                try {
+                    read = reader.read(chars, count, chars.length - count);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (read < 0) {
+                    reader = null;
+                    break;
+                }
+                count += read;
+            }
         }
 
         /**
@@ -204,7 +275,8 @@ public final class Lexer {
          * the length of the input.
          */
         public boolean has(int offset) {
-            return index + offset < input.length();
+            fill(index + offset + 1);
+            return index + offset - this.offset < count;
         }
 
         /**
@@ -212,7 +284,12 @@ public final class Lexer {
          * character does not exist.
          */
         public char get(int offset) {
-            return input.charAt(index + offset); //throws if out of bounds
+            fill(index + offset + 1);
+            int position = index + offset - this.offset;
+            if (position >= count) {
+                throw new StringIndexOutOfBoundsException(position);
+            }
+            return chars[position];
         }
 
         /**
@@ -238,7 +315,7 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip(); //we've saved the starting point already
-            return new Token(type, input.substring(start, index), start);
+            return new Token(type, new String(chars, start - offset, index - start), start);
         }
 
     }
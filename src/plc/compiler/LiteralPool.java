@@ -0,0 +1,171 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the literals of a specialized program (see {@link TypeSpecializer})
+ * that the {@link Generator} would otherwise emit as an allocation, such as
+ * {@code new java.math.BigInteger("5")}, so they can be created once in
+ * {@code private static final} fields of {@code Main} instead of on every
+ * evaluation. Literals are pooled by value and representation, so equal
+ * literals share a field; a literal converted by its parent is pooled in the
+ * representation it is converted to.
+ *
+ * {@code long} and {@code boolean} literals are primitives and string
+ * literals are already interned by the JVM, so only {@code BigInteger} and
+ * {@code BigDecimal} constants are pooled.
+ */
+public final class LiteralPool implements Ast.Visitor<Void> {
+
+    public static final class Constant {
+
+        private final String type;
+        private final String name;
+        private final String initializer;
+
+        private Constant(String type, String name, String initializer) {
+            this.type = type;
+            this.name = name;
+            this.initializer = initializer;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getInitializer() {
+            return initializer;
+        }
+
+    }
+
+    private final TypeSpecializer types;
+    private final FreshNames names;
+    private final Map<String, Constant> constants = new LinkedHashMap<>();
+
+    private LiteralPool(Ast.Source source, TypeSpecializer types) {
+        this.types = types;
+        this.names = new FreshNames(source);
+    }
+
+    /**
+     * Collects the literals of the given source, in order of first use.
+     */
+    public static LiteralPool collect(Ast.Source source, TypeSpecializer types) {
+        LiteralPool pool = new LiteralPool(source, types);
+        pool.visit(source);
+        return pool;
+    }
+
+    /**
+     * Returns the pooled constants in order of first use.
+     */
+    public List<Constant> getConstants() {
+        return Collections.unmodifiableList(new ArrayList<>(constants.values()));
+    }
+
+    /**
+     * Returns the name of the field holding the literal in the given
+     * representation, or {@code null} if it was not pooled.
+     */
+    public String getName(Ast.Expression.Literal ast, TypeSpecializer.Representation representation) {
+        Constant constant = constants.get(key(ast, representation));
+        return constant == null ? null : constant.getName();
+    }
+
+    private static boolean isPooled(TypeSpecializer.Representation representation) {
+        return representation == TypeSpecializer.Representation.BIG_INTEGER
+                || representation == TypeSpecializer.Representation.BIG_DECIMAL;
+    }
+
+    private static String key(Ast.Expression.Literal ast, TypeSpecializer.Representation representation) {
+        return representation + ":" + ast.getValue();
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        //the generator converts to the target first, if it is pooled
+        TypeSpecializer.Representation representation = types.getTarget(ast);
+        if (!isPooled(representation)) {
+            representation = types.getRepresentation(ast);
+        }
+        if (isPooled(representation) && !constants.containsKey(key(ast, representation))) {
+            String type = representation.getJavaType();
+            constants.put(key(ast, representation), new Constant(type, names.next("const"),
+                    "new " + type + "(\"" + ast.getValue() + "\")"));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+}
@@ -0,0 +1,105 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Hoists loop-invariant expressions out of {@code WHILE} loops. An expression
+ * is invariant when it is pure (see {@link Purity}) and reads no variable that
+ * the loop body assigns or declares. Each distinct invariant expression is
+ * evaluated once into a temporary declared immediately before the loop, and
+ * every occurrence inside the loop is replaced by a reference to it.
+ *
+ * Since hoisted expressions are evaluated even if the loop never runs, an
+ * expression is only hoisted if it cannot throw, which excludes division by
+ * anything other than a non-zero literal. Its type must also be known so the
+ * temporary can be declared. Inner loops are processed first, so invariants
+ * move out through as many loops as they are invariant in.
+ */
+public final class LoopInvariantCodeMotion extends ScopedTransformer {
+
+    private final Map<String, String> pureFunctions;
+    private FreshNames names;
+
+    /**
+     * Creates the pass with the given pure functions, mapped to their result
+     * types. All other functions are considered impure.
+     */
+    public LoopInvariantCodeMotion(Map<String, String> pureFunctions) {
+        this.pureFunctions = pureFunctions;
+    }
+
+    /**
+     * Hoists loop invariants in the given source, treating every function
+     * call as impure.
+     */
+    public static Ast.Source hoist(Ast.Source source) {
+        return (Ast.Source) new LoopInvariantCodeMotion(Collections.emptyMap()).visit(source);
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        names = new FreshNames(ast);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Statement.While loop = (Ast.Statement.While) super.visit(ast);
+        Hoister hoister = new Hoister(Variables.of(loop.getStatements()).getWrites(), types());
+        Ast.Statement.While hoisted = (Ast.Statement.While) hoister.visit(loop);
+        if (hoister.temporaries.isEmpty()) {
+            return loop;
+        }
+        List<Ast.Statement> statements = new ArrayList<>();
+        hoister.temporaries.forEach((expression, name) -> statements.add(new Ast.Statement.Declaration(name,
+                hoister.inference.visit(expression), Optional.of(expression))));
+        statements.add(hoisted);
+        return new Ast.Source(statements);
+    }
+
+    /**
+     * Replaces the largest invariant subexpressions within a single loop.
+     */
+    private final class Hoister extends Transformer {
+
+        private final Set<String> assigned;
+        private final TypeInference inference;
+        private final Purity purity;
+        private final Map<Ast.Expression, String> temporaries = new LinkedHashMap<>();
+
+        private Hoister(Set<String> assigned, Map<String, String> types) {
+            this.assigned = assigned;
+            this.inference = new TypeInference(types, pureFunctions);
+            this.purity = new Purity(pureFunctions.keySet());
+        }
+
+        @Override
+        protected Ast.Expression visitExpression(Ast.Expression expression) {
+            if (isInvariant(expression)) {
+                return new Ast.Expression.Variable(temporaries.computeIfAbsent(expression, e -> names.next("loop")));
+            }
+            return super.visitExpression(expression);
+        }
+
+        private boolean isInvariant(Ast.Expression expression) {
+            if (expression instanceof Ast.Expression.Literal || expression instanceof Ast.Expression.Variable) {
+                return false;
+            } else if (expression instanceof Ast.Expression.Group
+                    && !isInvariant(((Ast.Expression.Group) expression).getExpression())) {
+                return false;
+            }
+            return purity.visit(expression)
+                    && Collections.disjoint(Variables.of(expression).getReads(), assigned)
+                    && !Purity.mayThrow(expression)
+                    && inference.visit(expression) != null;
+        }
+
+    }
+
+}
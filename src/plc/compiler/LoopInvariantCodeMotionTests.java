@@ -0,0 +1,126 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class LoopInvariantCodeMotionTests {
+
+    @Test
+    void testHoist() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("rate", "INTEGER"),
+                declare("i", "INTEGER"),
+                new Ast.Statement.While(condition("i"), Arrays.asList(
+                        print(new Ast.Expression.Binary("*",
+                                new Ast.Expression.Variable("i"),
+                                new Ast.Expression.Group(new Ast.Expression.Binary("+",
+                                        new Ast.Expression.Variable("rate"),
+                                        new Ast.Expression.Literal(BigInteger.ONE)
+                                ))
+                        )),
+                        increment("i")
+                ))
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("rate", "INTEGER"),
+                declare("i", "INTEGER"),
+                new Ast.Statement.Declaration("$loop0", "INTEGER", Optional.of(
+                        new Ast.Expression.Group(new Ast.Expression.Binary("+",
+                                new Ast.Expression.Variable("rate"),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        ))
+                )),
+                new Ast.Statement.While(condition("i"), Arrays.asList(
+                        print(new Ast.Expression.Binary("*",
+                                new Ast.Expression.Variable("i"),
+                                new Ast.Expression.Variable("$loop0")
+                        )),
+                        increment("i")
+                ))
+        ));
+        Assertions.assertEquals(expected, LoopInvariantCodeMotion.hoist(ast));
+    }
+
+    @Test
+    void testAssignedNotHoisted() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("i", "INTEGER"),
+                new Ast.Statement.While(condition("i"), Arrays.asList(
+                        print(new Ast.Expression.Binary("+",
+                                new Ast.Expression.Variable("i"),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        )),
+                        increment("i")
+                ))
+        ));
+        Assertions.assertEquals(ast, LoopInvariantCodeMotion.hoist(ast));
+    }
+
+    @Test
+    void testUnsafeNotHoisted() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("a", "INTEGER"),
+                declare("b", "INTEGER"),
+                declare("i", "INTEGER"),
+                new Ast.Statement.While(condition("i"), Arrays.asList(
+                        print(new Ast.Expression.Binary("/",
+                                new Ast.Expression.Variable("a"),
+                                new Ast.Expression.Variable("b")
+                        )),
+                        print(new Ast.Expression.Function("RANDOM", Arrays.asList())),
+                        increment("i")
+                ))
+        ));
+        Assertions.assertEquals(ast, LoopInvariantCodeMotion.hoist(ast));
+    }
+
+    @Test
+    void testPureFunction() {
+        Ast.Expression call = new Ast.Expression.Function("SQRT", Arrays.asList(new Ast.Expression.Variable("a")));
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                declare("a", "DECIMAL"),
+                declare("i", "INTEGER"),
+                new Ast.Statement.While(condition("i"), Arrays.asList(print(call), increment("i")))
+        ));
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                declare("a", "DECIMAL"),
+                declare("i", "INTEGER"),
+                new Ast.Statement.Declaration("$loop0", "DECIMAL", Optional.of(call)),
+                new Ast.Statement.While(condition("i"), Arrays.asList(
+                        print(new Ast.Expression.Variable("$loop0")),
+                        increment("i")
+                ))
+        ));
+        LoopInvariantCodeMotion pass = new LoopInvariantCodeMotion(Collections.singletonMap("SQRT", "DECIMAL"));
+        Assertions.assertEquals(expected, pass.visit(ast));
+        Assertions.assertEquals(ast, LoopInvariantCodeMotion.hoist(ast));
+    }
+
+    private static Ast.Statement declare(String name, String type) {
+        return new Ast.Statement.Declaration(name, type, Optional.empty());
+    }
+
+    private static Ast.Expression condition(String name) {
+        return new Ast.Expression.Binary("!=",
+                new Ast.Expression.Variable(name),
+                new Ast.Expression.Literal(BigInteger.TEN)
+        );
+    }
+
+    private static Ast.Statement increment(String name) {
+        return new Ast.Statement.Assignment(name, new Ast.Expression.Binary("+",
+                new Ast.Expression.Variable(name),
+                new Ast.Expression.Literal(BigInteger.ONE)
+        ));
+    }
+
+    private static Ast.Statement print(Ast.Expression expression) {
+        return new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(expression)));
+    }
+
+}
@@ -0,0 +1,535 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans how the {@link Generator} splits a program into helper methods so
+ * that no generated method exceeds a bytecode size budget. HotSpot never
+ * compiles methods larger than 8000 bytes ({@code -XX:HugeMethodLimit}) and
+ * javac rejects methods larger than 64KB, both of which large scripts reach
+ * when everything is emitted into {@code main}.
+ *
+ * Sizes are estimated from the AST, so the budget should leave some margin.
+ * Statement lists are only changed when they do not fit: an {@code IF} or
+ * {@code WHILE} that is too large has its largest body moved into a method
+ * until it fits, and a list that is still too large is split into runs of
+ * consecutive statements, each moved into a method. Variables used by a
+ * method other than the one declaring them become static fields of
+ * {@code Main}; all others stay locals, so small hot loops are unaffected.
+ * Fields declared without a value are paired with a flag (see
+ * {@link #getFlag}), so reading one before it is assigned still fails.
+ *
+ * Given a {@link Profile}, code that never ran is kept out of the methods
+ * that did: a branch of an {@code IF} or body of a {@code WHILE} that never
+ * ran is moved into a method even if everything fits, and a list that does
+ * not fit has its runs of cold statements moved out before anything else is
+ * split, so the hot methods stay small enough to compile and inline well.
+ */
+public final class Outliner {
+
+    /**
+     * A helper method, whose body contains statements and calls to other
+     * methods.
+     */
+    public static final class Method {
+
+        private final String name;
+        private final List<Object> body;
+
+        private Method(String name, List<Object> body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Object> getBody() {
+            return body;
+        }
+
+    }
+
+    /**
+     * The default budget, in estimated bytes of bytecode per method.
+     */
+    public static final int DEFAULT_BUDGET = 6000;
+
+    /**
+     * The estimated size of calling a helper method.
+     */
+    private static final int CALL_SIZE = 3;
+
+    /**
+     * The smallest budget, which fits a method calling two others.
+     */
+    public static final int MIN_BUDGET = 2 * CALL_SIZE;
+
+    /**
+     * The estimated size above which cold code is moved out of a method
+     * that fits.
+     */
+    private static final int COLD_SIZE = 32;
+
+    private final int budget;
+    private final Profile profile;
+    private final FreshNames names;
+    private final Map<List<Ast.Statement>, List<Object>> bodies = new IdentityHashMap<>();
+    private final List<Method> methods = new ArrayList<>();
+    private final Map<Ast.Statement.Declaration, String> fields = new IdentityHashMap<>();
+    private final List<Ast.Statement.Declaration> order = new ArrayList<>();
+    private final Map<Ast.Statement.Declaration, String> flags = new IdentityHashMap<>();
+    private Resolver resolver;
+
+    private Outliner(Ast.Source source, int budget, Profile profile) {
+        this.budget = budget;
+        this.profile = profile;
+        this.names = new FreshNames(source);
+    }
+
+    /**
+     * Plans the methods of the given source. Programs that already fit are
+     * left unchanged; others must resolve (see {@link Resolver}).
+     */
+    public static Outliner outline(Ast.Source source, int budget) throws ParseException {
+        return outline(source, budget, null);
+    }
+
+    /**
+     * Plans the methods of the given source, moving out cold code according
+     * to the profile if there is one that {@link Profile#matches} it.
+     * Programs that are planned must resolve.
+     */
+    public static Outliner outline(Ast.Source source, int budget, Profile profile) throws ParseException {
+        if (budget < MIN_BUDGET) {
+            throw new IllegalArgumentException("Method budget " + budget + " is below " + MIN_BUDGET + ".");
+        }
+        if (profile != null && !profile.matches(source)) {
+            profile = null;
+        }
+        Outliner outliner = new Outliner(source, budget, profile);
+        if (size(source.getStatements()) > budget || profile != null) {
+            outliner.resolver = Resolver.resolve(source);
+            List<Object> main = outliner.plan(source.getStatements());
+            outliner.promote(main);
+        }
+        return outliner;
+    }
+
+    /**
+     * Returns the statements and method calls to emit for a statement list.
+     */
+    public List<Object> getBody(List<Ast.Statement> statements) {
+        List<Object> body = bodies.get(statements);
+        return body != null ? body : Collections.<Object>unmodifiableList(statements);
+    }
+
+    /**
+     * Returns the helper methods in the order they should be emitted.
+     */
+    public List<Method> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Returns the declarations promoted to static fields, in the order they
+     * are first seen.
+     */
+    public List<Ast.Statement.Declaration> getFields() {
+        return Collections.unmodifiableList(order);
+    }
+
+    public boolean isField(Ast.Statement.Declaration ast) {
+        return fields.containsKey(ast);
+    }
+
+    /**
+     * Returns the name of the {@code boolean} field recording whether the
+     * field a node refers to has been assigned, or {@code null} if it is
+     * always initialized by its declaration. A local gets this check from
+     * javac, but a field starts out as 0 or {@code null}, so reads of a
+     * field declared without a value must check it at runtime.
+     */
+    public String getFlag(Ast ast) {
+        return resolver != null && !flags.isEmpty() ? flags.get(resolver.getDeclaration(ast)) : null;
+    }
+
+    /**
+     * Returns the declaration a node refers to, if the program was planned.
+     */
+    Ast.Statement.Declaration getDeclaration(Ast ast) {
+        return resolver.getDeclaration(ast);
+    }
+
+    /**
+     * Returns the name emitted for the variable a declaration, assignment or
+     * variable node refers to, which differs from the source name if two
+     * fields would otherwise share it.
+     */
+    public String getName(Ast ast) {
+        if (resolver != null && !fields.isEmpty()) {
+            String name = fields.get(resolver.getDeclaration(ast));
+            if (name != null) {
+                return name;
+            }
+        }
+        if (ast instanceof Ast.Statement.Declaration) {
+            return ((Ast.Statement.Declaration) ast).getName();
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            return ((Ast.Statement.Assignment) ast).getName();
+        }
+        return ((Ast.Expression.Variable) ast).getName();
+    }
+
+    /**
+     * Plans a statement list, returning units that fit within the budget.
+     */
+    private List<Object> plan(List<Ast.Statement> statements) {
+        List<Object> units = new ArrayList<>();
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.If) {
+                Ast.Statement.If ast = (Ast.Statement.If) statement;
+                fit(size(ast.getCondition()) + 6, ast.getThenStatements(), ast.getElseStatements());
+                moveCold(ast, Profile.Kind.THEN, ast.getThenStatements());
+                moveCold(ast, Profile.Kind.ELSE, ast.getElseStatements());
+            } else if (statement instanceof Ast.Statement.While) {
+                Ast.Statement.While ast = (Ast.Statement.While) statement;
+                fit(size(ast.getCondition()) + 6, ast.getStatements());
+                moveCold(ast, Profile.Kind.ITERATION, ast.getStatements());
+            }
+            units.add(statement);
+        }
+        if (profile != null && sizeOf(units) > budget) {
+            units = groupCold(units);
+        }
+        while (units.size() > 1 && sizeOf(units) > budget) {
+            List<List<Object>> groups = new ArrayList<>();
+            List<Object> group = new ArrayList<>();
+            int size = 0;
+            for (Object unit : units) {
+                if (!group.isEmpty() && size + sizeOf(unit) > budget) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                    size = 0;
+                }
+                group.add(unit);
+                size += sizeOf(unit);
+            }
+            groups.add(group);
+            if (groups.size() * CALL_SIZE >= sizeOf(units)) {
+                break; //the units are already calls, which cannot get any smaller
+            }
+            List<Object> grouped = new ArrayList<>();
+            for (List<Object> next : groups) {
+                grouped.add(method(next));
+            }
+            units = grouped;
+        }
+        if (!units.equals(statements)) {
+            bodies.put(statements, units);
+        }
+        return units;
+    }
+
+    /**
+     * Plans the bodies of a compound statement, then moves the largest into
+     * methods until the statement fits.
+     */
+    @SafeVarargs
+    private final void fit(int overhead, List<Ast.Statement>... lists) {
+        int size = overhead;
+        for (List<Ast.Statement> list : lists) {
+            size += sizeOf(plan(list));
+        }
+        while (size > budget) {
+            List<Ast.Statement> largest = null;
+            for (List<Ast.Statement> list : lists) {
+                if (largest == null || sizeOf(getBody(list)) > sizeOf(getBody(largest))) {
+                    largest = list;
+                }
+            }
+            if (sizeOf(getBody(largest)) <= CALL_SIZE) {
+                break; //only the condition is left, which cannot be split
+            }
+            size -= sizeOf(getBody(largest)) - CALL_SIZE;
+            bodies.put(largest, Collections.singletonList(method(new ArrayList<>(getBody(largest)))));
+        }
+    }
+
+    /**
+     * Moves the body of a statement that ran into a method if the body never
+     * did and is large enough to be worth a call.
+     */
+    private void moveCold(Ast.Statement statement, Profile.Kind kind, List<Ast.Statement> body) {
+        if (profile != null && statement.getIndex() >= 0
+                && profile.get(statement.getIndex(), Profile.Kind.STATEMENT) > 0
+                && profile.get(statement.getIndex(), kind) == 0
+                && sizeOf(getBody(body)) > COLD_SIZE) {
+            bodies.put(body, Collections.singletonList(method(new ArrayList<>(getBody(body)))));
+        }
+    }
+
+    /**
+     * Moves each run of consecutive statements that never ran into a method.
+     */
+    private List<Object> groupCold(List<Object> units) {
+        List<Object> grouped = new ArrayList<>();
+        List<Object> run = new ArrayList<>();
+        for (Object unit : units) {
+            if (isCold(unit)) {
+                run.add(unit);
+                continue;
+            }
+            grouped.addAll(run.size() > 1 || sizeOf(run) > CALL_SIZE ? Collections.singletonList(method(run)) : run);
+            run = new ArrayList<>();
+            grouped.add(unit);
+        }
+        grouped.addAll(run.size() > 1 || sizeOf(run) > CALL_SIZE ? Collections.singletonList(method(run)) : run);
+        return grouped;
+    }
+
+    private boolean isCold(Object unit) {
+        return unit instanceof Ast.Statement && ((Ast.Statement) unit).getIndex() >= 0
+                && profile.get(((Ast.Statement) unit).getIndex(), Profile.Kind.STATEMENT) == 0;
+    }
+
+    private Method method(List<Object> body) {
+        Method method = new Method(names.next("method"), body);
+        methods.add(method);
+        return method;
+    }
+
+    private int sizeOf(List<Object> units) {
+        int size = 0;
+        for (Object unit : units) {
+            size += sizeOf(unit);
+        }
+        return size;
+    }
+
+    private int sizeOf(Object unit) {
+        if (unit instanceof Method) {
+            return CALL_SIZE;
+        } else if (unit instanceof Ast.Statement.If) {
+            Ast.Statement.If ast = (Ast.Statement.If) unit;
+            return size(ast.getCondition()) + 6 + sizeOf(getBody(ast.getThenStatements()))
+                    + sizeOf(getBody(ast.getElseStatements()));
+        } else if (unit instanceof Ast.Statement.While) {
+            Ast.Statement.While ast = (Ast.Statement.While) unit;
+            return size(ast.getCondition()) + 6 + sizeOf(getBody(ast.getStatements()));
+        }
+        return size((Ast) unit);
+    }
+
+    private static int size(List<Ast.Statement> statements) {
+        int size = 0;
+        for (Ast.Statement statement : statements) {
+            size += size(statement);
+        }
+        return size;
+    }
+
+    private static int size(Ast ast) {
+        return new SizeEstimator().visit(ast);
+    }
+
+    /**
+     * Finds the method each variable is declared and used in, promoting those
+     * used across methods to fields.
+     */
+    private void promote(List<Object> main) {
+        Usages usages = new Usages();
+        usages.visit(main, "main");
+        for (Method method : methods) {
+            usages.visit(method.getBody(), method.getName());
+        }
+        Set<String> used = new HashSet<>();
+        for (Ast.Statement.Declaration declaration : usages.declarations) {
+            if (usages.methods.get(declaration).size() > 1) {
+                String name = declaration.getName();
+                fields.put(declaration, used.add(name) ? name : names.next(name));
+                order.add(declaration);
+                if (!declaration.getValue().isPresent()) {
+                    flags.put(declaration, names.next(name + "Initialized"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the bytecode size of a node. Expressions are assumed to cost
+     * a few bytes per node, with calls and conversions in specialized
+     * arithmetic included in the cost of binary expressions.
+     */
+    private static final class SizeEstimator implements Ast.Visitor<Integer> {
+
+        @Override
+        public Integer visit(Ast.Source ast) {
+            return size(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Expression ast) {
+            return visit(ast.getExpression()) + 1;
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Declaration ast) {
+            return ast.getValue().map(this::visit).orElse(1) + 2;
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Assignment ast) {
+            return visit(ast.getExpression()) + 3;
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.If ast) {
+            return visit(ast.getCondition()) + 6 + size(ast.getThenStatements()) + size(ast.getElseStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.While ast) {
+            return visit(ast.getCondition()) + 6 + size(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Literal ast) {
+            return 3;
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Group ast) {
+            return visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Binary ast) {
+            return visit(ast.getLeft()) + visit(ast.getRight()) + 10;
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Variable ast) {
+            return 3;
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Function ast) {
+            int size = 6;
+            for (Ast.Expression argument : ast.getArguments()) {
+                size += visit(argument);
+            }
+            return size;
+        }
+
+    }
+
+    /**
+     * Records the methods every declaration is declared and used in.
+     */
+    private final class Usages implements Ast.Visitor<Void> {
+
+        private final Map<Ast.Statement.Declaration, Set<String>> methods = new IdentityHashMap<>();
+        private final List<Ast.Statement.Declaration> declarations = new ArrayList<>();
+        private String method;
+
+        private void visit(List<Object> units, String method) {
+            for (Object unit : units) {
+                if (!(unit instanceof Method)) {
+                    this.method = method;
+                    visit((Ast) unit);
+                }
+            }
+        }
+
+        private void use(Ast ast) {
+            methods.computeIfAbsent(resolver.getDeclaration(ast), d -> new HashSet<>()).add(method);
+        }
+
+        private void visitBody(List<Ast.Statement> statements) {
+            String method = this.method;
+            visit(getBody(statements), method);
+            this.method = method;
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            throw new AssertionError("Methods are visited by their bodies.");
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Expression ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Declaration ast) {
+            ast.getValue().ifPresent(this::visit);
+            declarations.add(ast);
+            use(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Assignment ast) {
+            visit(ast.getExpression());
+            use(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.If ast) {
+            visit(ast.getCondition());
+            visitBody(ast.getThenStatements());
+            visitBody(ast.getElseStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.While ast) {
+            visit(ast.getCondition());
+            visitBody(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Group ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Binary ast) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Variable ast) {
+            use(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Function ast) {
+            ast.getArguments().forEach(this::visit);
+            return null;
+        }
+
+    }
+
+}
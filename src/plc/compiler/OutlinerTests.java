@@ -0,0 +1,150 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.List;
+
+public class OutlinerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "LET i : INTEGER = 0;",
+            "LET sum : INTEGER = 0;",
+            "LET text : STRING = \"\";",
+            "WHILE i != 10 DO",
+            "    LET square : INTEGER = i * i;",
+            "    IF (i / 2) * 2 == i THEN",
+            "        sum = sum + square;",
+            "        text = text + \"even\";",
+            "    ELSE",
+            "        sum = sum - square;",
+            "        text = text + \"odd\";",
+            "    END",
+            "    i = i + 1;",
+            "END",
+            "sum = sum * 2;"
+    );
+
+    @Test
+    void testFits() {
+        Ast.Source source = parse(PROGRAM);
+        Outliner outliner = Outliner.outline(source, Outliner.DEFAULT_BUDGET);
+        Assertions.assertTrue(outliner.getMethods().isEmpty());
+        Assertions.assertTrue(outliner.getFields().isEmpty());
+        Assertions.assertEquals(source.getStatements(), outliner.getBody(source.getStatements()));
+    }
+
+    @Test
+    void testBudget() {
+        Ast.Source source = parse(PROGRAM);
+        Outliner outliner = Outliner.outline(source, 60);
+        Assertions.assertFalse(outliner.getMethods().isEmpty());
+        Ast.Statement.Declaration sum = (Ast.Statement.Declaration) source.getStatements().get(1);
+        Assertions.assertTrue(outliner.isField(sum));
+    }
+
+    @Test
+    void testMinimumBudget() {
+        Ast.Source source = parse("LET x : INTEGER = 1; PRINT(x); PRINT(x);");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Outliner.outline(source, Outliner.MIN_BUDGET - 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Generator.Options().setMethodBudget(Outliner.MIN_BUDGET - 1));
+        Outliner outliner = Outliner.outline(source, Outliner.MIN_BUDGET);
+        Assertions.assertFalse(outliner.getMethods().isEmpty());
+    }
+
+    @Test
+    void testGeneratedSource() throws ReflectiveOperationException {
+        Ast.Source source = parse(PROGRAM);
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        new Generator(out, TypeSpecializer.analyze(source), new Generator.Options().setMethodBudget(60)).visit(source);
+        out.flush();
+        Assertions.assertTrue(writer.toString().contains("private static void $method0() {"), writer.toString());
+        Class<?> main = new InProcessCompiler().compile(writer.toString());
+        InProcessCompiler.run(main);
+
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()));
+        interpreter.visit(source);
+        for (String name : new String[] {"sum", "text"}) {
+            Field field = main.getDeclaredField(name);
+            field.setAccessible(true);
+            Assertions.assertEquals(Values.format(interpreter.getScope().lookup(name).getValue()),
+                    Values.format(field.get(null)));
+        }
+    }
+
+    @Test
+    void testCold() {
+        Ast.Source source = parse(PROGRAM);
+        Ast.Statement.While loop = (Ast.Statement.While) source.getStatements().get(3);
+        Ast.Statement.If branch = (Ast.Statement.If) loop.getStatements().get(1);
+        Profile profile = new Profile(Profile.checksum(source), true);
+        profile.add(loop.getIndex(), Profile.Kind.STATEMENT, 1);
+        profile.add(loop.getIndex(), Profile.Kind.ITERATION, 10);
+        profile.add(branch.getIndex(), Profile.Kind.STATEMENT, 10);
+        profile.add(branch.getIndex(), Profile.Kind.THEN, 10);
+        Outliner outliner = Outliner.outline(source, Outliner.DEFAULT_BUDGET, profile);
+        Assertions.assertEquals(1, outliner.getMethods().size());
+        Assertions.assertEquals(branch.getThenStatements(), outliner.getBody(branch.getThenStatements()));
+        Assertions.assertEquals(1, outliner.getBody(branch.getElseStatements()).size());
+        Assertions.assertEquals(source.getStatements(), outliner.getBody(source.getStatements()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {6, 10, 30})
+    void testInterpreted(int budget) {
+        String[] programs = {
+                PROGRAM + "\nPRINT(sum, text);",
+                "LET x : INTEGER; LET c : BOOLEAN = 1 == 2; IF c THEN x = 1; END PRINT(\"pre\"); PRINT(x);",
+                String.join("\n",
+                        "LET i : INTEGER = 0;",
+                        "LET last : INTEGER;",
+                        "WHILE i != 5 DO",
+                        "    last = i * 2;",
+                        "    i = i + 1;",
+                        "END",
+                        "PRINT(\"last\", last);"
+                )
+        };
+        for (String program : programs) {
+            StringWriter expected = new StringWriter();
+            PrintWriter out = new PrintWriter(expected, true);
+            try {
+                new Interpreter(out).visit(parse(program));
+            } catch (EvaluationException e) {
+                out.println(e.getMessage());
+            }
+            Ast.Source source = parse(program);
+            CharSink sink = new CharSink();
+            Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard()).setMethodBudget(budget);
+            new Generator(sink, TypeSpecializer.analyze(source), options).visit(source);
+            Class<?> main = new InProcessCompiler().compile(sink.toString());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream stream = new PrintStream(bytes, true);
+            ScriptRuntime.setOutput(stream);
+            try {
+                InProcessCompiler.run(main);
+            } catch (EvaluationException e) {
+                ScriptRuntime.flush();
+                stream.println(e.getMessage());
+            } finally {
+                ScriptRuntime.setOutput(System.out);
+            }
+            Assertions.assertEquals(expected.toString(), bytes.toString(), program);
+        }
+    }
+
+    private static Ast.Source parse(String input) {
+        List<Token> tokens = Lexer.lex(input);
+        return (Ast.Source) Parser.parse(tokens);
+    }
+
+}
@@ -24,7 +24,15 @@ public final class Parser {
     private final TokenStream tokens;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this.tokens = new TokenStream(tokens, null);
+    }
+
+    /**
+     * Creates a parser that pulls tokens from the lexer as they are needed,
+     * for use with {@link #parseNextStatement()}.
+     */
+    Parser(Lexer lexer) {
+        this.tokens = new TokenStream(new ArrayList<>(), lexer);
     }
 
     /**
@@ -45,6 +53,17 @@ public final class Parser {
         return new Ast.Source(ast_list);
     }
 
+    /**
+     * Parses the next statement of the {@code source} rule, returning {@code
+     * null} at the end of the input. Tokens of previous statements are
+     * released, so a parser reading from a {@link Lexer} only holds the
+     * tokens of the statement being parsed.
+     */
+    public Ast.Statement parseNextStatement() throws ParseException {
+        tokens.release();
+        return tokens.has(0) ? parseStatement() : null;
+    }
+
     /**
      * Parses the {@code statement} rule and delegates to the necessary method.
      * If the next tokens do not start a declaration, assignment, if, or while
@@ -52,18 +71,19 @@ public final class Parser {
      * clarification on what starts each type of statement.
      */
     public Ast.Statement parseStatement() throws ParseException {
+        int start = start();
         if (peek(Token.Type.IDENTIFIER)) {
             if (match("IF")) {
-                return parseIfStatement();
+                return at(start, parseIfStatement());
             } else if (match("WHILE")) {
-                return parseWhileStatement();
+                return at(start, parseWhileStatement());
             } else if (match("LET")) {
-                return parseDeclarationStatement();
+                return at(start, parseDeclarationStatement());
             } else if (peek(Token.Type.IDENTIFIER, "=")) {
-                return parseAssignmentStatement();
+                return at(start, parseAssignmentStatement());
             }
         }
-        return parseExpressionStatement();
+        return at(start, parseExpressionStatement());
     }
 
     /**
@@ -182,7 +202,7 @@ public final class Parser {
         String operator = tokens.get(0).getLiteral();
         tokens.advance();
         Ast.Expression second_expr = parseAdditiveExpression();
-        return new Ast.Expression.Binary(operator, first_expr, second_expr);
+        return at(first_expr.getIndex(), new Ast.Expression.Binary(operator, first_expr, second_expr));
     }
 
     /**
@@ -196,7 +216,7 @@ public final class Parser {
         String operator = tokens.get(0).getLiteral();
         tokens.advance();
         Ast.Expression second_expr = parseMultiplicativeExpression();
-        return new Ast.Expression.Binary(operator, first_expr, second_expr);
+        return at(first_expr.getIndex(), new Ast.Expression.Binary(operator, first_expr, second_expr));
     }
 
     /**
@@ -210,7 +230,7 @@ public final class Parser {
         String operator = tokens.get(0).getLiteral();
         tokens.advance();
         Ast.Expression second_expr = parsePrimaryExpression();
-        return new Ast.Expression.Binary(operator, first_expr, second_expr);
+        return at(first_expr.getIndex(), new Ast.Expression.Binary(operator, first_expr, second_expr));
     }
 
     /**
@@ -220,6 +240,10 @@ public final class Parser {
      * not strictly necessary.
      */
     public Ast.Expression parsePrimaryExpression() throws ParseException {
+        return at(start(), parsePrimary());
+    }
+
+    private Ast.Expression parsePrimary() throws ParseException {
         if (match(Token.Type.INTEGER)) {
             return new Ast.Expression.Literal(new BigInteger(tokens.get(-1).getLiteral()));
         } else if (match(Token.Type.DECIMAL)) {
@@ -305,27 +329,58 @@ public final class Parser {
         return peek;
     }
 
+    /**
+     * Returns the offset of the next token in the input, or -1 at the end.
+     */
+    private int start() {
+        return tokens.has(0) ? tokens.get(0).getIndex() : -1;
+    }
+
+    /**
+     * Records the offset of the first token of a node, returning the node.
+     */
+    private static <T extends Ast> T at(int start, T ast) {
+        ast.setIndex(start);
+        return ast;
+    }
+
+    /**
+     * The tokens being parsed. When reading from a lexer, tokens are lexed as
+     * they are needed and the list only holds those from {@code base}, the
+     * index of the first token not yet released.
+     */
     private static final class TokenStream {
 
         private final List<Token> tokens;
+        private Lexer lexer;
+        private int base = 0;
         private int index = 0;
 
-        private TokenStream(List<Token> tokens) {
+        private TokenStream(List<Token> tokens, Lexer lexer) {
             this.tokens = tokens;
+            this.lexer = lexer;
         }
 
         /**
          * Returns true if there is a token at index + offset.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            while (lexer != null && index + offset - base >= tokens.size()) {
+                Token token = lexer.next();
+                if (token == null) {
+                    lexer = null;
+                } else {
+                    tokens.add(token);
+                }
+            }
+            return index + offset - base < tokens.size();
         }
 
         /**
          * Gets the token at index + offset.
          */
         public Token get(int offset) {
-            return tokens.get(index + offset);
+            return tokens.get(index + offset - base);
         }
 
         /**
@@ -335,6 +390,17 @@ public final class Parser {
             index++;
         }
 
+        /**
+         * Releases the tokens before the index, which are no longer needed
+         * once a statement has been parsed.
+         */
+        public void release() {
+            if (lexer != null || base != 0) {
+                tokens.subList(0, index - base).clear();
+                base = index;
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,296 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs the optimization passes between the parser and the generator. The
+ * passes for a {@link Level} run in a fixed order, and the whole sequence is
+ * repeated until the AST stops changing or the level's iteration bound is
+ * reached. Each pass is timed and the change in the number of AST nodes is
+ * recorded, see {@link #getStatistics()}.
+ *
+ * In debug mode the AST is checked by the {@link Verifier} after every pass,
+ * so a broken transform fails at the pass that caused it.
+ */
+public final class PassManager {
+
+    /**
+     * Optimization levels, named after the corresponding command line flags.
+     */
+    public enum Level {
+        /**
+         * No optimization.
+         */
+        O0(0),
+        /**
+         * Cheap passes that only remove code.
+         */
+        O1(2),
+        /**
+         * All passes, including those that introduce temporaries.
+         */
+        O2(8);
+
+        private final int iterations;
+
+        Level(int iterations) {
+            this.iterations = iterations;
+        }
+
+        /**
+         * Parses a flag such as {@code -O2}.
+         */
+        public static Level parse(String flag) {
+            for (Level level : values()) {
+                if (flag.equals("-" + level.name())) {
+                    return level;
+                }
+            }
+            throw new IllegalArgumentException("Unknown optimization level " + flag + ".");
+        }
+
+    }
+
+    /**
+     * A named pass. The supplier is called each time the pass runs, since
+     * passes keep state while visiting.
+     */
+    public static final class Pass {
+
+        private final String name;
+        private final Supplier<Ast.Visitor<Ast>> factory;
+
+        public Pass(String name, Supplier<Ast.Visitor<Ast>> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Ast.Source run(Ast.Source source) {
+            return (Ast.Source) factory.get().visit(source);
+        }
+
+    }
+
+    /**
+     * Timing and size information for a single run of a pass.
+     */
+    public static final class Statistics {
+
+        private final String pass;
+        private final int iteration;
+        private final long nanos;
+        private final int nodesBefore;
+        private final int nodesAfter;
+
+        private Statistics(String pass, int iteration, long nanos, int nodesBefore, int nodesAfter) {
+            this.pass = pass;
+            this.iteration = iteration;
+            this.nanos = nanos;
+            this.nodesBefore = nodesBefore;
+            this.nodesAfter = nodesAfter;
+        }
+
+        public String getPass() {
+            return pass;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getNodesBefore() {
+            return nodesBefore;
+        }
+
+        public int getNodesAfter() {
+            return nodesAfter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s #%d %10.3f ms %8d -> %d nodes",
+                    pass, iteration, nanos / 1e6, nodesBefore, nodesAfter);
+        }
+
+    }
+
+    private final List<Pass> passes;
+    private final int iterations;
+    private final boolean debug;
+    private final List<Statistics> statistics = new ArrayList<>();
+
+    public PassManager(List<Pass> passes, int iterations, boolean debug) {
+        this.passes = passes;
+        this.iterations = iterations;
+        this.debug = debug;
+    }
+
+    /**
+     * Creates a pass manager with the standard passes for the given level.
+     * Functions in {@code pureFunctions} (mapped to their result types) are
+     * treated as side effect free.
+     */
+    public PassManager(Level level, Map<String, String> pureFunctions, boolean debug) {
+        this(passes(level, pureFunctions), level.iterations, debug);
+    }
+
+    /**
+     * Returns the standard passes for the given level, in the order they run.
+     */
+    public static List<Pass> passes(Level level, Map<String, String> pureFunctions) {
+        Pass simplify = new Pass("ControlFlowSimplifier", ControlFlowSimplifier::new);
+        Pass deadStores = new Pass("DeadStoreElimination",
+                () -> new DeadStoreElimination(pureFunctions.keySet()));
+        switch (level) {
+            case O0:
+                return Collections.emptyList();
+            case O1:
+                return Arrays.asList(simplify, deadStores);
+            case O2:
+                return Arrays.asList(simplify,
+                        new Pass("LoopInvariantCodeMotion", () -> new LoopInvariantCodeMotion(pureFunctions)),
+                        new Pass("CommonSubexpressionElimination", () -> new CommonSubexpressionElimination(pureFunctions)),
+                        deadStores);
+            default:
+                throw new AssertionError(level);
+        }
+    }
+
+    /**
+     * Optimizes the given source, returning the new AST.
+     */
+    public Ast.Source run(Ast.Source source) {
+        if (debug) {
+            Verifier.verify(source);
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Ast.Source before = source;
+            for (Pass pass : passes) {
+                int nodesBefore = NodeCounter.count(source);
+                long start = System.nanoTime();
+                source = pass.run(source);
+                long nanos = System.nanoTime() - start;
+                statistics.add(new Statistics(pass.getName(), iteration, nanos, nodesBefore, NodeCounter.count(source)));
+                if (debug) {
+                    try {
+                        Verifier.verify(source);
+                    } catch (AssertionError e) {
+                        throw new AssertionError("Invalid AST after " + pass.getName() + ": " + e.getMessage(), e);
+                    }
+                }
+            }
+            if (source.equals(before)) {
+                break;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Returns the statistics for every pass run so far, in order.
+     */
+    public List<Statistics> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics formatted one pass per line.
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Statistics entry : statistics) {
+            builder.append(entry).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Counts the nodes in an AST.
+     */
+    private static final class NodeCounter implements Ast.Visitor<Integer> {
+
+        private static final NodeCounter INSTANCE = new NodeCounter();
+
+        private static int count(Ast ast) {
+            return INSTANCE.visit(ast);
+        }
+
+        private int count(List<? extends Ast> asts) {
+            int count = 0;
+            for (Ast ast : asts) {
+                count += visit(ast);
+            }
+            return count;
+        }
+
+        @Override
+        public Integer visit(Ast.Source ast) {
+            return 1 + count(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Expression ast) {
+            return 1 + visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Declaration ast) {
+            return 1 + ast.getValue().map(this::visit).orElse(0);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Assignment ast) {
+            return 1 + visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.If ast) {
+            return 1 + visit(ast.getCondition()) + count(ast.getThenStatements()) + count(ast.getElseStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.While ast) {
+            return 1 + visit(ast.getCondition()) + count(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Literal ast) {
+            return 1;
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Group ast) {
+            return 1 + visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Binary ast) {
+            return 1 + visit(ast.getLeft()) + visit(ast.getRight());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Variable ast) {
+            return 1;
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Function ast) {
+            return 1 + count(ast.getArguments());
+        }
+
+    }
+
+}
@@ -0,0 +1,86 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class PassManagerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "LET unused : INTEGER = 1;",
+            "LET rate : INTEGER = 2;",
+            "LET i : INTEGER = 0;",
+            "WHILE i != 10 DO",
+            "    IF FALSE THEN",
+            "        PRINT(\"never\");",
+            "    END",
+            "    PRINT(i * (rate + 1));",
+            "    i = i + 1;",
+            "END"
+    );
+
+    @Test
+    void testLevelO0() {
+        Ast.Source source = parse();
+        PassManager manager = new PassManager(PassManager.Level.O0, Collections.emptyMap(), true);
+        Assertions.assertEquals(source, manager.run(source));
+        Assertions.assertTrue(manager.getStatistics().isEmpty());
+    }
+
+    @Test
+    void testLevelO2() {
+        Ast.Expression i = new Ast.Expression.Variable("i");
+        Ast.Source expected = new Ast.Source(Arrays.asList(
+                new Ast.Statement.Declaration("rate", "INTEGER", Optional.of(literal(2))),
+                new Ast.Statement.Declaration("i", "INTEGER", Optional.of(literal(0))),
+                new Ast.Statement.Declaration("$loop0", "INTEGER", Optional.of(
+                        new Ast.Expression.Group(new Ast.Expression.Binary("+",
+                                new Ast.Expression.Variable("rate"),
+                                literal(1)
+                        ))
+                )),
+                new Ast.Statement.While(new Ast.Expression.Binary("!=", i, literal(10)), Arrays.asList(
+                        new Ast.Statement.Expression(new Ast.Expression.Function("PRINT", Arrays.asList(
+                                new Ast.Expression.Binary("*", i, new Ast.Expression.Variable("$loop0"))
+                        ))),
+                        new Ast.Statement.Assignment("i", new Ast.Expression.Binary("+", i, literal(1)))
+                ))
+        ));
+        PassManager manager = new PassManager(PassManager.Level.O2, Collections.emptyMap(), true);
+        Assertions.assertEquals(expected, manager.run(parse()));
+        Assertions.assertFalse(manager.getStatistics().isEmpty());
+        Assertions.assertTrue(manager.report().contains("LoopInvariantCodeMotion"));
+    }
+
+    @Test
+    void testDebugVerification() {
+        PassManager.Pass broken = new PassManager.Pass("Broken", () -> new Transformer() {
+            @Override
+            public Ast visit(Ast.Expression.Variable ast) {
+                return new Ast.Expression.Variable("$missing");
+            }
+        });
+        PassManager manager = new PassManager(Arrays.asList(broken), 1, true);
+        AssertionError error = Assertions.assertThrows(AssertionError.class, () -> manager.run(parse()));
+        Assertions.assertTrue(error.getMessage().startsWith("Invalid AST after Broken"));
+    }
+
+    @Test
+    void testParseLevel() {
+        Assertions.assertEquals(PassManager.Level.O1, PassManager.Level.parse("-O1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PassManager.Level.parse("-O9"));
+    }
+
+    private static Ast.Expression literal(long value) {
+        return new Ast.Expression.Literal(BigInteger.valueOf(value));
+    }
+
+    private static Ast.Source parse() {
+        return (Ast.Source) Parser.parse(Lexer.lex(PROGRAM));
+    }
+
+}
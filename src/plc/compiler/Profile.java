@@ -0,0 +1,370 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Execution counts and times of a script, keyed by the offsets of nodes in
+ * the script (see {@link Ast#getIndex()}).
+ *
+ * Profiles are collected by instrumented {@code Main} classes (see
+ * {@link Generator.Options#setInstrumented}), which count into a
+ * {@code long[]} and register it with {@link #register} when the class is
+ * initialized. The counts of all registered classes are written when the
+ * JVM exits, to the file named by the {@value #PROPERTY} system property or
+ * to {@link System#err}, one {@code index KIND value} line per probe.
+ *
+ * Since offsets only mean something in the script they came from, a profile
+ * also records a checksum of the script's statements and their positions,
+ * written as a leading {@code checksum value} line. An instrumented
+ * {@code main} that returns normally calls {@link #complete}, recorded as a
+ * {@code complete} line. Optimizations that could change results when a
+ * profile is wrong, such as speculating that a variable fits in a
+ * {@code long}, ignore profiles that do not {@link #matches} the script
+ * being compiled or are not {@link #isComplete}: scripts read no input, so
+ * a complete run of the same script saw every value any run will, while a
+ * run that threw or exited early may have stopped short of an overflow.
+ */
+public final class Profile {
+
+    public static final String PROPERTY = "plc.profile";
+
+    public enum Kind {
+
+        /**
+         * The number of times a statement started.
+         */
+        STATEMENT,
+
+        /**
+         * The number of times the then branch of an {@code IF} ran.
+         */
+        THEN,
+
+        /**
+         * The number of times the else branch of an {@code IF} ran.
+         */
+        ELSE,
+
+        /**
+         * The number of iterations of a {@code WHILE}, over all its runs.
+         */
+        ITERATION,
+
+        /**
+         * Nanoseconds spent in a {@code WHILE}, or in the then branch of an
+         * {@code IF}.
+         */
+        TIME,
+
+        /**
+         * Nanoseconds spent in the else branch of an {@code IF}.
+         */
+        ELSE_TIME,
+
+        /**
+         * The number of times a function was called.
+         */
+        CALL,
+
+        /**
+         * The number of values stored into an {@code INTEGER} variable
+         * represented as a {@link java.math.BigInteger} that fit in a
+         * {@code long}.
+         */
+        LONG_STORE,
+
+        /**
+         * The number of values stored into such a variable that did not.
+         */
+        OVERFLOW
+
+    }
+
+    /**
+     * The probes of an initialized instrumented class, with the table
+     * describing them.
+     */
+    private static final class Registration {
+
+        private final long[] probes;
+        private final long checksum;
+        private final String table;
+        private boolean complete;
+
+        private Registration(long[] probes, long checksum, String table) {
+            this.probes = probes;
+            this.checksum = checksum;
+            this.table = table;
+        }
+
+    }
+
+    private static final List<Registration> registered = new ArrayList<>();
+    private static boolean hooked = false;
+
+    private final Map<Integer, long[]> values = new TreeMap<>();
+    private long checksum;
+    private boolean complete;
+
+    /**
+     * Creates an empty profile of an unknown script, which matches none.
+     */
+    public Profile() {
+        this(0, false);
+    }
+
+    /**
+     * Creates an empty profile of the script with the given checksum (see
+     * {@link #checksum(Ast.Source)}), and whether it comes from a run that
+     * completed normally.
+     */
+    public Profile(long checksum, boolean complete) {
+        this.checksum = checksum;
+        this.complete = complete;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Returns whether every run in this profile completed normally.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns whether this profile was collected from the given script.
+     */
+    public boolean matches(Ast.Source source) {
+        return checksum != 0 && checksum == checksum(source);
+    }
+
+    /**
+     * Returns a checksum of the structure of a script and the positions of
+     * its statements, which is never 0.
+     */
+    public static long checksum(Ast.Source source) {
+        long checksum = 0;
+        for (Ast.Statement statement : source.getStatements()) {
+            checksum = checksum(checksum, statement);
+        }
+        return checksum;
+    }
+
+    /**
+     * Adds a top-level statement to a checksum, so it can be computed as a
+     * script is streamed.
+     */
+    static long checksum(long checksum, Ast.Statement statement) {
+        checksum = 31 * checksum + hash(statement);
+        return checksum != 0 ? checksum : 1;
+    }
+
+    private static long hash(Ast.Statement statement) {
+        long hash = 31L * statement.hashCode() + statement.getIndex();
+        List<Ast.Statement> nested = Collections.emptyList();
+        if (statement instanceof Ast.Statement.If) {
+            nested = new ArrayList<>(((Ast.Statement.If) statement).getThenStatements());
+            nested.addAll(((Ast.Statement.If) statement).getElseStatements());
+        } else if (statement instanceof Ast.Statement.While) {
+            nested = ((Ast.Statement.While) statement).getStatements();
+        }
+        for (Ast.Statement child : nested) {
+            hash = 31 * hash + hash(child);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the value of a probe, or 0 if it was never recorded.
+     */
+    public long get(int index, Kind kind) {
+        long[] values = this.values.get(index);
+        return values != null ? values[kind.ordinal()] : 0;
+    }
+
+    /**
+     * Adds to the value of a probe.
+     */
+    public void add(int index, Kind kind, long value) {
+        values.computeIfAbsent(index, i -> new long[Kind.values().length])[kind.ordinal()] += value;
+    }
+
+    /**
+     * Returns the offsets of all nodes with recorded values, in order.
+     */
+    public Set<Integer> getIndices() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    /**
+     * Writes the checksum, if known, whether the profile is complete, and
+     * every nonzero value as an {@code index KIND value} line.
+     */
+    public void write(Writer writer) {
+        try {
+            if (checksum != 0) {
+                writer.write("checksum " + checksum);
+                writer.write(System.lineSeparator());
+            }
+            if (complete) {
+                writer.write("complete");
+                writer.write(System.lineSeparator());
+            }
+            for (Map.Entry<Integer, long[]> entry : values.entrySet()) {
+                for (Kind kind : Kind.values()) {
+                    if (entry.getValue()[kind.ordinal()] != 0) {
+                        writer.write(entry.getKey() + " " + kind + " " + entry.getValue()[kind.ordinal()]);
+                        writer.write(System.lineSeparator());
+                    }
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a profile written by {@link #write(Writer)}, adding the values of
+     * repeated probes. A malformed line throws a {@link ParseException} with
+     * the offset of the start of the line as the index.
+     */
+    public static Profile read(Reader reader) {
+        StringBuilder text = new StringBuilder();
+        try {
+            char[] chunk = new char[8192];
+            for (int length = reader.read(chunk); length >= 0; length = reader.read(chunk)) {
+                text.append(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Profile profile = new Profile();
+        for (int start = 0; start < text.length(); ) {
+            int end = text.indexOf("\n", start);
+            end = end < 0 ? text.length() : end;
+            String line = text.substring(start, end).trim();
+            if (!line.isEmpty()) {
+                String[] fields = line.split("\\s+");
+                try {
+                    if (fields.length == 1 && fields[0].equals("complete")) {
+                        profile.complete = true;
+                    } else if (fields.length == 2 && fields[0].equals("checksum")) {
+                        profile.checksum = Long.parseLong(fields[1]);
+                    } else if (fields.length == 3) {
+                        profile.add(Integer.parseInt(fields[0]), Kind.valueOf(fields[1]), Long.parseLong(fields[2]));
+                    } else {
+                        throw new IllegalArgumentException(line);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("Invalid profile line: " + line, start);
+                }
+            }
+            start = end + 1;
+        }
+        return profile;
+    }
+
+    /**
+     * Registers the probes of an instrumented class, generated from the
+     * script with the given checksum. The table describes
+     * each entry as {@code index kind slot;}, with the kind given by its
+     * ordinal; it is split into several strings to stay within the size of a
+     * class file constant. Entries may share a slot, as calls share the
+     * counter of the statement that always evaluates them.
+     */
+    public static void register(long[] probes, long checksum, String... table) {
+        synchronized (registered) {
+            if (!hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(Profile::dump));
+                hooked = true;
+            }
+            registered.add(new Registration(probes, checksum, String.join("", table)));
+        }
+    }
+
+    /**
+     * Records that the {@code main} of the instrumented class with the given
+     * probes returned normally.
+     */
+    public static void complete(long[] probes) {
+        synchronized (registered) {
+            for (Registration registration : registered) {
+                if (registration.probes == probes) {
+                    registration.complete = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current values of all registered classes. The checksum is
+     * only known if they were all generated from the same script, and the
+     * profile is only complete if they all completed.
+     */
+    public static Profile collect() {
+        Profile profile = new Profile();
+        synchronized (registered) {
+            profile.complete = !registered.isEmpty();
+            for (Registration registration : registered) {
+                profile.complete &= registration.complete;
+                profile.checksum = registration == registered.get(0) || profile.checksum == registration.checksum
+                        ? registration.checksum : 0;
+                for (String entry : registration.table.split(";")) {
+                    if (entry.isEmpty()) {
+                        continue;
+                    }
+                    String[] fields = entry.split(" ");
+                    profile.add(Integer.parseInt(fields[0]), Kind.values()[Integer.parseInt(fields[1])],
+                            registration.probes[Integer.parseInt(fields[2])]);
+                }
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Forgets all registered classes, so they are not written at exit.
+     */
+    static void reset() {
+        synchronized (registered) {
+            registered.clear();
+        }
+    }
+
+    private static void dump() {
+        Profile profile = collect();
+        if (profile.values.isEmpty()) {
+            return;
+        }
+        String file = System.getProperty(PROPERTY);
+        try {
+            if (file != null) {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+                    profile.write(writer);
+                }
+            } else {
+                profile.write(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class ProfileTests {
+
+    private static final String SCRIPT = String.join("\n",
+            "LET i : INTEGER = 0;",
+            "LET odd : INTEGER = 0;",
+            "WHILE i != 10 DO",
+            "    IF (i / 2) * 2 == i THEN",
+            "        PRINT(i);",
+            "    ELSE",
+            "        odd = odd + 1;",
+            "    END",
+            "    i = i + 1;",
+            "END",
+            "PRINT(odd);"
+    );
+
+    @Test
+    void testInstrumented() {
+        Profile profile = run(new Generator.Options().setBuiltins(Builtins.standard()).setInstrumented(true));
+        Assertions.assertEquals(1, profile.get(SCRIPT.indexOf("LET i"), Profile.Kind.STATEMENT));
+        int loop = SCRIPT.indexOf("WHILE");
+        Assertions.assertEquals(1, profile.get(loop, Profile.Kind.STATEMENT));
+        Assertions.assertEquals(10, profile.get(loop, Profile.Kind.ITERATION));
+        Assertions.assertTrue(profile.get(loop, Profile.Kind.TIME) > 0);
+        int branch = SCRIPT.indexOf("IF");
+        Assertions.assertEquals(10, profile.get(branch, Profile.Kind.STATEMENT));
+        Assertions.assertEquals(5, profile.get(branch, Profile.Kind.THEN));
+        Assertions.assertEquals(5, profile.get(branch, Profile.Kind.ELSE));
+        Assertions.assertEquals(5, profile.get(SCRIPT.indexOf("PRINT(i)"), Profile.Kind.CALL));
+        Assertions.assertEquals(10, profile.get(SCRIPT.indexOf("i = i + 1"), Profile.Kind.STATEMENT));
+        Assertions.assertEquals(1, profile.get(SCRIPT.indexOf("PRINT(odd)"), Profile.Kind.CALL));
+        Assertions.assertTrue(profile.isComplete());
+    }
+
+    @Test
+    void testIncomplete() {
+        String script = "LET i : INTEGER = 0; WHILE i != 5 DO i = i + 1; END PRINT(1 / i, 1 / (i - 5));";
+        Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard()).setInstrumented(true);
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(script));
+        CharSink sink = new CharSink();
+        new Generator(sink, TypeSpecializer.analyze(source), options).visit(source);
+        Class<?> main = new InProcessCompiler().compile(sink.toString());
+        try {
+            Assertions.assertThrows(ArithmeticException.class, () -> InProcessCompiler.run(main));
+            Profile profile = Profile.collect();
+            Assertions.assertEquals(5, profile.get(script.indexOf("WHILE"), Profile.Kind.ITERATION));
+            Assertions.assertTrue(profile.matches(source));
+            Assertions.assertFalse(profile.isComplete());
+        } finally {
+            Profile.reset();
+        }
+    }
+
+    @Test
+    void testCompact() {
+        Profile profile = run(new Generator.Options().setBuiltins(Builtins.standard()).setInstrumented(true).setCompact(true));
+        Assertions.assertEquals(10, profile.get(SCRIPT.indexOf("WHILE"), Profile.Kind.ITERATION));
+    }
+
+    @Test
+    void testConditionCalls() {
+        String script = "LET i : INTEGER = 0; WHILE NEXT(i) != 3 DO i = i + 1; END";
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(script));
+        CharSink sink = new CharSink();
+        new Generator(sink, null, new Generator.Options().setInstrumented(true)).visit(source);
+        //the condition is evaluated once per iteration and once more per run of the loop
+        Assertions.assertTrue(sink.toString().contains(
+                (script.indexOf("NEXT") + " " + Profile.Kind.CALL.ordinal() + " 1;")));
+        Assertions.assertTrue(sink.toString().contains(
+                (script.indexOf("NEXT") + " " + Profile.Kind.CALL.ordinal() + " 3;")));
+    }
+
+    @Test
+    void testStreamedChecksum() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        CharSink sink = new CharSink();
+        StreamingCompiler.compile(new StringReader(SCRIPT), sink, new Generator.Options().setInstrumented(true));
+        Assertions.assertTrue(sink.toString().contains("register($probes, " + Profile.checksum(source) + "L, "));
+        Assertions.assertTrue(sink.toString().contains("Profile.complete($probes);"));
+    }
+
+    @Test
+    void testUninstrumented() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        CharSink sink = new CharSink();
+        new Generator(sink, null, new Generator.Options()).visit(source);
+        Assertions.assertFalse(sink.toString().contains("$probes"));
+        Assertions.assertFalse(sink.toString().contains("nanoTime"));
+    }
+
+    @Test
+    void testReadWrite() {
+        Profile profile = new Profile();
+        profile.add(4, Profile.Kind.THEN, 3);
+        profile.add(4, Profile.Kind.ELSE, 7);
+        profile.add(0, Profile.Kind.STATEMENT, 1);
+        StringWriter writer = new StringWriter();
+        profile.write(writer);
+        Assertions.assertEquals(String.join(System.lineSeparator(), "0 STATEMENT 1", "4 THEN 3", "4 ELSE 7", ""),
+                writer.toString());
+        Profile read = Profile.read(new StringReader(writer.toString() + "4 THEN 1\n"));
+        Assertions.assertEquals(4, read.get(4, Profile.Kind.THEN));
+        Assertions.assertEquals(0, read.getChecksum());
+        Assertions.assertFalse(read.isComplete());
+        Assertions.assertTrue(Profile.read(new StringReader("checksum 5\ncomplete\n")).isComplete());
+        Assertions.assertEquals(0, read.get(4, Profile.Kind.TIME));
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> Profile.read(new StringReader("1 STATEMENT 2\n1 LOOP 3\n")));
+        Assertions.assertEquals(14, exception.getIndex());
+    }
+
+    @Test
+    void testGuided() {
+        String script = String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET sum : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    sum = sum + i;",
+                "    IF sum == 1000 THEN",
+                "        PRINT(\"never\", sum);",
+                "    ELSE",
+                "        i = i + 1;",
+                "    END",
+                "END",
+                "PRINT(sum);"
+        );
+        Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard()).setInstrumented(true);
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(script));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Profile profile = run(source, TypeSpecializer.analyze(source), options, expected);
+        int sum = script.indexOf("LET sum");
+        Assertions.assertEquals(11, profile.get(sum, Profile.Kind.LONG_STORE));
+        Assertions.assertEquals(0, profile.get(sum, Profile.Kind.OVERFLOW));
+
+        Assertions.assertTrue(profile.matches(source));
+        StringWriter writer = new StringWriter();
+        profile.write(writer);
+        profile = Profile.read(new StringReader(writer.toString()));
+        Assertions.assertTrue(profile.matches(source));
+        Assertions.assertTrue(profile.isComplete());
+
+        TypeSpecializer types = TypeSpecializer.analyze(source, profile);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(source.getStatements().get(1)));
+        options = new Generator.Options().setBuiltins(Builtins.standard()).setProfile(profile);
+        CharSink sink = new CharSink();
+        new Generator(sink, types, options).visit(source);
+        Assertions.assertTrue(sink.toString().contains("if (!(sum == 1000L)) {"), sink.toString());
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        run(source, types, options, actual);
+        Assertions.assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static Profile run(Generator.Options options) {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        return run(source, TypeSpecializer.analyze(source), options, new ByteArrayOutputStream());
+    }
+
+    private static Profile run(Ast.Source source, TypeSpecializer types, Generator.Options options,
+            ByteArrayOutputStream output) {
+        CharSink sink = new CharSink();
+        new Generator(sink, types, options).visit(source);
+        Class<?> main = new InProcessCompiler().compile(sink.toString());
+        ScriptRuntime.setOutput(new PrintStream(output));
+        try {
+            InProcessCompiler.run(main);
+            ScriptRuntime.flush();
+            return Profile.collect();
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+            Profile.reset();
+        }
+    }
+
+}
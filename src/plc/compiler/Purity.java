@@ -0,0 +1,130 @@
+package plc.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Determines whether an expression is free of side effects. Every expression
+ * is pure except for {@link Ast.Expression.Function} calls, which may do
+ * anything (such as {@code PRINT}) unless the function has been registered as
+ * pure.
+ */
+public final class Purity implements Ast.Visitor<Boolean> {
+
+    private static final Purity DEFAULT = new Purity(Collections.emptySet());
+
+    private final Set<String> pureFunctions;
+
+    public Purity(Set<String> pureFunctions) {
+        this.pureFunctions = pureFunctions;
+    }
+
+    /**
+     * Returns {@code true} if evaluating the expression has no side effects,
+     * treating every function call as impure.
+     */
+    public static boolean isPure(Ast.Expression expression) {
+        return DEFAULT.visit(expression);
+    }
+
+    @Override
+    public Boolean visit(Ast.Source ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Statement.Expression ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Statement.Declaration ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Statement.Assignment ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Statement.If ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Statement.While ast) {
+        throw new AssertionError("Purity is only defined for expressions.");
+    }
+
+    @Override
+    public Boolean visit(Ast.Expression.Literal ast) {
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expression.Binary ast) {
+        return visit(ast.getLeft()) && visit(ast.getRight());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expression.Variable ast) {
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expression.Function ast) {
+        if (!pureFunctions.contains(ast.getName())) {
+            return false;
+        }
+        for (Ast.Expression argument : ast.getArguments()) {
+            if (!visit(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the expression contains a division whose divisor
+     * is not a non-zero literal.
+     */
+    public static boolean mayThrow(Ast.Expression expression) {
+        if (expression instanceof Ast.Expression.Group) {
+            return mayThrow(((Ast.Expression.Group) expression).getExpression());
+        } else if (expression instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) expression;
+            if (binary.getOperator().equals("/") && !isNonZeroLiteral(binary.getRight())) {
+                return true;
+            }
+            return mayThrow(binary.getLeft()) || mayThrow(binary.getRight());
+        } else if (expression instanceof Ast.Expression.Function) {
+            for (Ast.Expression argument : ((Ast.Expression.Function) expression).getArguments()) {
+                if (mayThrow(argument)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNonZeroLiteral(Ast.Expression expression) {
+        while (expression instanceof Ast.Expression.Group) {
+            expression = ((Ast.Expression.Group) expression).getExpression();
+        }
+        if (!(expression instanceof Ast.Expression.Literal)) {
+            return false;
+        }
+        Object value = ((Ast.Expression.Literal) expression).getValue();
+        return value instanceof BigInteger && ((BigInteger) value).signum() != 0
+                || value instanceof BigDecimal && ((BigDecimal) value).signum() != 0;
+    }
+
+}
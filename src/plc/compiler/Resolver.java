@@ -0,0 +1,177 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves every variable to the declaration it refers to and assigns each
+ * declaration a slot in a flat frame, so an execution engine can store
+ * variables in an array instead of looking them up by name.
+ *
+ * Each statement list is a scope; a declaration is visible from the next
+ * statement to the end of its list. Slots are released when their scope
+ * ends, so sibling scopes share slots and the frame is only as large as the
+ * deepest nesting of live variables. Using or assigning a variable that is
+ * not in scope, or declaring one that already is, throws a
+ * {@link ParseException} at the position of the offending node.
+ *
+ * Results are kept in identity maps keyed by node, since structurally equal
+ * nodes may refer to different variables.
+ */
+public final class Resolver implements Ast.Visitor<Void> {
+
+    private final Map<Ast, Ast.Statement.Declaration> declarations = new IdentityHashMap<>();
+    private final Map<Ast.Statement.Declaration, Integer> slots = new IdentityHashMap<>();
+    private final Deque<Map<String, Ast.Statement.Declaration>> scopes = new ArrayDeque<>();
+    private int next = 0;
+    private int frameSize = 0;
+
+    /**
+     * Resolves the given source.
+     */
+    public static Resolver resolve(Ast.Source source) throws ParseException {
+        Resolver resolver = new Resolver();
+        resolver.visit(source);
+        return resolver;
+    }
+
+    /**
+     * Returns the declaration referred to by a {@link Ast.Statement.Declaration},
+     * {@link Ast.Statement.Assignment} or {@link Ast.Expression.Variable} node.
+     */
+    public Ast.Statement.Declaration getDeclaration(Ast ast) {
+        Ast.Statement.Declaration declaration = declarations.get(ast);
+        if (declaration == null) {
+            throw new IllegalArgumentException("Node was not resolved: " + ast);
+        }
+        return declaration;
+    }
+
+    /**
+     * Returns the frame slot of the variable referred to by a node, as in
+     * {@link #getDeclaration(Ast)}.
+     */
+    public int getSlot(Ast ast) {
+        return slots.get(getDeclaration(ast));
+    }
+
+    /**
+     * Returns the number of slots needed for the whole program.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    private void resolveStatements(List<Ast.Statement> statements) {
+        int start = next;
+        scopes.push(new HashMap<>());
+        try {
+            for (Ast.Statement statement : statements) {
+                visit(statement);
+            }
+        } finally {
+            scopes.pop();
+            next = start;
+        }
+    }
+
+    private Ast.Statement.Declaration lookup(String name) {
+        for (Map<String, Ast.Statement.Declaration> scope : scopes) {
+            Ast.Statement.Declaration declaration = scope.get(name);
+            if (declaration != null) {
+                return declaration;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        resolveStatements(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        if (lookup(ast.getName()) != null) {
+            throw new ParseException("Variable " + ast.getName() + " is already declared.", ast.getIndex());
+        }
+        scopes.peek().put(ast.getName(), ast);
+        declarations.put(ast, ast);
+        slots.put(ast, next++);
+        frameSize = Math.max(frameSize, next);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        visit(ast.getExpression());
+        Ast.Statement.Declaration declaration = lookup(ast.getName());
+        if (declaration == null) {
+            throw new ParseException("Variable " + ast.getName() + " is assigned before it is declared.", ast.getIndex());
+        }
+        declarations.put(ast, declaration);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        resolveStatements(ast.getThenStatements());
+        resolveStatements(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        resolveStatements(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        Ast.Statement.Declaration declaration = lookup(ast.getName());
+        if (declaration == null) {
+            throw new ParseException("Variable " + ast.getName() + " is used before it is declared.", ast.getIndex());
+        }
+        declarations.put(ast, declaration);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+}
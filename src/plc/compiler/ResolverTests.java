@@ -0,0 +1,79 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class ResolverTests {
+
+    @Test
+    void testSlots() {
+        Ast.Source source = parse(String.join("\n",
+                "LET a : INTEGER = 1;",
+                "LET b : INTEGER = a;",
+                "a = b;"
+        ));
+        Resolver resolver = Resolver.resolve(source);
+        Ast.Statement.Declaration b = (Ast.Statement.Declaration) source.getStatements().get(1);
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) source.getStatements().get(2);
+        Assertions.assertEquals(0, resolver.getSlot(source.getStatements().get(0)));
+        Assertions.assertEquals(1, resolver.getSlot(b));
+        Assertions.assertEquals(0, resolver.getSlot(b.getValue().get()));
+        Assertions.assertEquals(0, resolver.getSlot(assignment));
+        Assertions.assertEquals(1, resolver.getSlot(assignment.getExpression()));
+        Assertions.assertEquals(2, resolver.getFrameSize());
+    }
+
+    @Test
+    void testSiblingScopesShareSlots() {
+        Ast.Source source = parse(String.join("\n",
+                "LET flag : BOOLEAN = TRUE;",
+                "IF flag THEN",
+                "    LET x : INTEGER = 1;",
+                "    PRINT(x);",
+                "ELSE",
+                "    LET y : STRING = \"y\";",
+                "    PRINT(y);",
+                "END",
+                "WHILE flag DO",
+                "    LET x : DECIMAL = 1.0;",
+                "    flag = FALSE;",
+                "END"
+        ));
+        Resolver resolver = Resolver.resolve(source);
+        Ast.Statement.If branch = (Ast.Statement.If) source.getStatements().get(1);
+        Ast.Statement.While loop = (Ast.Statement.While) source.getStatements().get(2);
+        Assertions.assertEquals(1, resolver.getSlot(branch.getThenStatements().get(0)));
+        Assertions.assertEquals(1, resolver.getSlot(branch.getElseStatements().get(0)));
+        Assertions.assertEquals(1, resolver.getSlot(loop.getStatements().get(0)));
+        Assertions.assertEquals(2, resolver.getFrameSize());
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse("PRINT(x);")));
+        Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse("x = 1;")));
+        Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse("LET x : INTEGER = x;")));
+        Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse(
+                "LET x : INTEGER; IF TRUE THEN LET x : INTEGER; END")));
+        Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse(
+                "IF TRUE THEN LET x : INTEGER = 1; END PRINT(x);")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "LET y : INTEGER = 1; PRINT(y, x);",
+            "LET y : INTEGER = 1; x = y;",
+            "LET x : INTEGER; IF TRUE THEN LET x : INTEGER; END"
+    })
+    void testErrorIndex(String input) {
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> Resolver.resolve(parse(input)));
+        Assertions.assertEquals(input.lastIndexOf(input.contains("LET x") ? "LET x" : "x"), exception.getIndex());
+    }
+
+    private static Ast.Source parse(String input) {
+        return (Ast.Source) Parser.parse(Lexer.lex(input));
+    }
+
+}
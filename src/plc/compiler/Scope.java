@@ -0,0 +1,89 @@
+package plc.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A lexical scope of variables at runtime. Each statement list executes in
+ * its own scope, whose parent is the enclosing scope.
+ */
+public final class Scope {
+
+    public static final class Variable {
+
+        private final String type;
+        private Object value;
+
+        private Variable(String type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the value, which is {@code null} until the variable is
+         * initialized.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        public void setValue(Object value) {
+            this.value = value;
+        }
+
+    }
+
+    private final Scope parent;
+    private final Map<String, Variable> variables = new HashMap<>();
+
+    public Scope(Scope parent) {
+        this.parent = parent;
+    }
+
+    public Scope getParent() {
+        return parent;
+    }
+
+    /**
+     * Declares a variable in this scope, which must not already be defined
+     * here or in a parent scope.
+     */
+    public Variable define(String name, String type, Object value) {
+        if (find(name) != null) {
+            throw new EvaluationException("Variable " + name + " is already defined.");
+        }
+        Variable variable = new Variable(type, value);
+        variables.put(name, variable);
+        return variable;
+    }
+
+    /**
+     * Returns the variable with the given name, throwing if it is undefined.
+     */
+    public Variable lookup(String name) {
+        Variable variable = find(name);
+        if (variable == null) {
+            throw new EvaluationException("Variable " + name + " is not defined.");
+        }
+        return variable;
+    }
+
+    /**
+     * Returns the variable with the given name, or {@code null} if it is
+     * undefined.
+     */
+    Variable find(String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Variable variable = scope.variables.get(name);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        return null;
+    }
+
+}
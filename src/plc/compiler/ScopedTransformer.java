@@ -0,0 +1,50 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Transformer} that tracks the declared type of every variable in
+ * scope. Each statement list (the source, an {@code IF} branch or a
+ * {@code WHILE} body) opens a new scope, and a declaration is visible from
+ * the statement after it until the end of its list.
+ */
+public abstract class ScopedTransformer extends Transformer {
+
+    private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+
+    @Override
+    protected List<Ast.Statement> visitStatements(List<Ast.Statement> statements) {
+        scopes.push(new HashMap<>());
+        try {
+            return super.visitStatements(statements);
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Declaration ast) {
+        Ast result = super.visit(ast);
+        if (!scopes.isEmpty()) {
+            scopes.peek().put(ast.getName(), ast.getType());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the types of all variables currently in scope.
+     */
+    protected Map<String, String> types() {
+        Map<String, String> types = new HashMap<>();
+        for (Iterator<Map<String, String>> it = scopes.descendingIterator(); it.hasNext(); ) {
+            types.putAll(it.next());
+        }
+        return types;
+    }
+
+}
@@ -0,0 +1,122 @@
+package plc.compiler;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The runtime support library linked by generated {@code Main} classes (see
+ * {@link Builtins}). Output is collected in a buffer and written to
+ * {@link System#out} in large chunks, rather than locking the stream on
+ * every call; generated code calls {@link #flush()} when {@code main}
+ * returns or throws, and a shutdown hook catches anything left if the
+ * program exits another way.
+ *
+ * The buffer is not synchronized, since scripts are single threaded.
+ * Values are formatted exactly as by {@link Values#format(Object)}, but
+ * numbers small enough for a {@code long} are written directly into the
+ * buffer without creating strings.
+ */
+public final class ScriptRuntime {
+
+    private static final int CAPACITY = 8192;
+    private static final StringBuilder buffer = new StringBuilder(2 * CAPACITY);
+    private static PrintStream out = System.out;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ScriptRuntime::flush));
+    }
+
+    private ScriptRuntime() {}
+
+    /**
+     * Redirects output, flushing anything written so far to the old stream.
+     */
+    public static void setOutput(PrintStream stream) {
+        flush();
+        out = stream;
+    }
+
+    /**
+     * Writes the arguments, separated by spaces, on a line.
+     */
+    public static void print(Object... arguments) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            append(arguments[i]);
+        }
+        newline();
+    }
+
+    public static void print(long value) {
+        buffer.append(value);
+        newline();
+    }
+
+    public static void print(String value) {
+        buffer.append(value);
+        newline();
+    }
+
+    /**
+     * Writes all buffered output.
+     */
+    public static void flush() {
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+
+    private static void newline() {
+        buffer.append(System.lineSeparator());
+        if (buffer.length() >= CAPACITY) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends the formatted value to the buffer.
+     */
+    static void append(Object value) {
+        if (value instanceof Long) {
+            buffer.append((long) (Long) value);
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            buffer.append(((BigInteger) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            append((BigDecimal) value);
+        } else {
+            buffer.append(Values.format(value));
+        }
+    }
+
+    private static void append(BigDecimal value) {
+        if (value.scale() < 0 || value.unscaledValue().bitLength() >= 63) {
+            buffer.append(value.toPlainString());
+            return;
+        }
+        long unscaled = value.unscaledValue().longValue();
+        int scale = value.scale();
+        if (unscaled < 0) {
+            buffer.append('-');
+        }
+        int start = buffer.length();
+        buffer.append(Math.abs(unscaled));
+        int digits = buffer.length() - start;
+        if (scale == 0) {
+            return;
+        } else if (digits > scale) {
+            buffer.insert(buffer.length() - scale, '.');
+        } else {
+            char[] prefix = new char[2 + scale - digits];
+            Arrays.fill(prefix, '0');
+            prefix[1] = '.';
+            buffer.insert(start, prefix);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+public class ScriptRuntimeTests {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "123", "9223372036854775807", "-9223372036854775808", "123456789012345678901234567890"})
+    void testInteger(String value) {
+        Assertions.assertEquals(value, print(new BigInteger(value)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0.0", "0.00", "1.5", "-1.5", "0.05", "-0.005", "123.456", "1E+3", "12345678901234567890.123456789"})
+    void testDecimal(String value) {
+        Assertions.assertEquals(Values.format(new BigDecimal(value)), print(new BigDecimal(value)));
+    }
+
+    @Test
+    void testArguments() {
+        Assertions.assertEquals("1 true text 2.50", print(1L, true, "text", new BigDecimal("2.50")));
+    }
+
+    @Test
+    void testGeneratedSource() {
+        String input = String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET average : DECIMAL = 0.0;",
+                "WHILE i != 20 DO",
+                "    average = (average + i) / 2;",
+                "    PRINT(i, average, \"i=\" + i);",
+                "    i = i + 1;",
+                "END",
+                "PRINT(i);"
+        );
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(input));
+        StringWriter expected = new StringWriter();
+        PrintWriter expectedOut = new PrintWriter(expected);
+        new Interpreter(expectedOut).visit(source);
+        expectedOut.flush();
+
+        Class<?> main = new InProcessCompiler().compile(source);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(bytes));
+        try {
+            InProcessCompiler.run(main);
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+        Assertions.assertEquals(expected.toString(), bytes.toString());
+    }
+
+    private static String print(Object... arguments) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(bytes));
+        try {
+            ScriptRuntime.print(arguments);
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+        return bytes.toString().trim();
+    }
+
+}
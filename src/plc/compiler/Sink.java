@@ -0,0 +1,74 @@
+package plc.compiler;
+
+import java.util.Arrays;
+
+/**
+ * Where the {@link Generator} writes generated source. Unlike a
+ * {@link java.io.PrintWriter}, a sink does not lock on every call, appends
+ * numbers without creating strings, and writes indentation from a cache of
+ * one string per level instead of one write per level.
+ *
+ * Implementations only need to append characters; see {@link CharSink} for
+ * an in-memory buffer and {@link WriterSink} for an adapter to a
+ * {@link java.io.Writer}.
+ */
+public abstract class Sink {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final String[] INDENTS = new String[32];
+
+    static {
+        char[] spaces = new char[4 * INDENTS.length];
+        Arrays.fill(spaces, ' ');
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = new String(spaces, 0, 4 * i);
+        }
+    }
+
+    public abstract Sink append(char c);
+
+    public abstract Sink append(String string);
+
+    public abstract Sink append(char[] chars, int offset, int length);
+
+    public Sink append(long value) {
+        return append(Long.toString(value));
+    }
+
+    /**
+     * Appends a value as by {@link String#valueOf(Object)}.
+     */
+    public Sink append(Object value) {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Returns the number of decimal digits of a non-negative value.
+     */
+    static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Starts a new line indented by the given number of levels.
+     */
+    public Sink newline(int indent) {
+        append(LINE_SEPARATOR);
+        while (indent >= INDENTS.length) {
+            append(INDENTS[INDENTS.length - 1]);
+            indent -= INDENTS.length - 1;
+        }
+        return append(INDENTS[indent]);
+    }
+
+    /**
+     * Writes anything buffered to the underlying destination, if any.
+     */
+    public void flush() {}
+
+}
@@ -0,0 +1,47 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+
+public class SinkTests {
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE})
+    void testLong(long value) {
+        Assertions.assertEquals(Long.toString(value), new CharSink(1).append(value).toString());
+    }
+
+    @Test
+    void testNewline() {
+        CharSink sink = new CharSink();
+        sink.append('{').newline(1).append("x;").newline(40).append("y;");
+        String indent = String.join("", Collections.nCopies(40, "    "));
+        Assertions.assertEquals("{" + System.lineSeparator() + "    x;" + System.lineSeparator() + indent + "y;",
+                sink.toString());
+    }
+
+    @Test
+    void testGenerator() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(String.join("\n",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    IF (i / 2) * 2 == i THEN",
+                "        PRINT(\"even\", i);",
+                "    END",
+                "    i = i + 1;",
+                "END"
+        )));
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(source);
+        CharSink sink = new CharSink();
+        new Generator(sink).visit(source);
+        Assertions.assertEquals(writer.toString(), sink.toString());
+    }
+
+}
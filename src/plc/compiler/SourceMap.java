@@ -0,0 +1,302 @@
+package plc.compiler;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps positions in the Java source written by the {@link Generator} back to
+ * the script, so stack traces and profiler samples of the generated
+ * {@code Main} class can be read in terms of the script. Pass an empty map
+ * to {@link Generator.Options#setSourceMap} and it is filled in with the
+ * range of generated text of every node that has a position (see
+ * {@link Ast#getIndex()}).
+ *
+ * Lines are numbered from 1 and columns from 0, as in the generated file.
+ */
+public final class SourceMap {
+
+    /**
+     * A range of generated text and the offset in the script of the node
+     * that produced it.
+     */
+    public static final class Mapping {
+
+        private final int line;
+        private final int column;
+        private final int endLine;
+        private final int endColumn;
+        private final int index;
+
+        private Mapping(int line, int column, int endLine, int endColumn, int index) {
+            this.line = line;
+            this.column = column;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+            this.index = index;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public int getEndColumn() {
+            return endColumn;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        private boolean contains(int line, int column) {
+            return compare(this.line, this.column, line, column) <= 0
+                    && compare(line, column, endLine, endColumn) < 0;
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column + "-" + endLine + ":" + endColumn + "=" + index;
+        }
+
+    }
+
+    /**
+     * Orders mappings by where they start, with enclosing mappings first.
+     */
+    private static final Comparator<Mapping> ORDER = (a, b) -> {
+        int start = compare(a.line, a.column, b.line, b.column);
+        return start != 0 ? start : compare(b.endLine, b.endColumn, a.endLine, a.endColumn);
+    };
+
+    private static final Pattern FRAME = Pattern.compile(
+            "([\\w$.]+)\\.[\\w$<>]+\\((?:[^():]*:(\\d+)|[^()]*\\) line: (\\d+))");
+
+    private final List<Mapping> mappings = new ArrayList<>();
+    private boolean sorted = true;
+
+    /**
+     * Returns the mappings ordered by where they start, with enclosing
+     * mappings before those nested in them.
+     */
+    public List<Mapping> getMappings() {
+        sort();
+        return Collections.unmodifiableList(mappings);
+    }
+
+    void add(int line, int column, int endLine, int endColumn, int index) {
+        mappings.add(new Mapping(line, column, endLine, endColumn, index));
+        sorted = false;
+    }
+
+    /**
+     * Returns the script offset of the statement or expression that starts
+     * first on a generated line, which is where javac places its line number,
+     * or of the innermost node enclosing the line if none starts on it. The
+     * result is -1 if the line is not part of any node.
+     */
+    public int getIndex(int line) {
+        sort();
+        int first = search(line, 0);
+        if (first < mappings.size() && mappings.get(first).line == line) {
+            return mappings.get(first).index;
+        }
+        return getIndex(line, 0);
+    }
+
+    /**
+     * Returns the script offset of the innermost node whose generated text
+     * contains the given position, or -1 if there is none.
+     */
+    public int getIndex(int line, int column) {
+        sort();
+        for (int i = search(line, column + 1) - 1; i >= 0; i--) {
+            if (mappings.get(i).contains(line, column)) {
+                return mappings.get(i).index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the script offset of a stack trace element, or -1 if it is not
+     * in a generated {@code Main} class or has no line number.
+     */
+    public int getIndex(StackTraceElement frame) {
+        return isGenerated(frame.getClassName()) && frame.getLineNumber() > 0 ? getIndex(frame.getLineNumber()) : -1;
+    }
+
+    /**
+     * Returns the script offsets of the frames of a JFR sample, such as the
+     * stack trace of a {@code jdk.ExecutionSample} event, from the top of the
+     * stack. Frames outside the generated class are skipped.
+     */
+    public List<Integer> getIndices(RecordedStackTrace trace) {
+        List<Integer> indices = new ArrayList<>();
+        for (RecordedFrame frame : trace.getFrames()) {
+            if (frame.isJavaFrame() && isGenerated(frame.getMethod().getType().getName())
+                    && frame.getLineNumber() > 0) {
+                int index = getIndex(frame.getLineNumber());
+                if (index >= 0) {
+                    indices.add(index);
+                }
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Annotates a stack trace in text form with script locations. Frames of
+     * the generated class, printed either by {@link Throwable} as in
+     * {@code Main.main(Main.java:12)} or by {@code jfr print} as in
+     * {@code Main.main(String[]) line: 12}, have the line and column in the
+     * script appended in brackets.
+     */
+    public String translate(String trace, String script) {
+        StringBuilder builder = new StringBuilder(trace.length());
+        for (String line : trace.split("\\R", -1)) {
+            if (builder.length() > 0) {
+                builder.append(System.lineSeparator());
+            }
+            builder.append(line);
+            Matcher matcher = FRAME.matcher(line);
+            if (matcher.find() && isGenerated(matcher.group(1))) {
+                int index = getIndex(Integer.parseInt(matcher.group(2) != null ? matcher.group(2) : matcher.group(3)));
+                if (index >= 0) {
+                    builder.append(" [script ").append(position(script, index)).append(']');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the 1-based line and column of an offset in the script, as
+     * {@code line:column}.
+     */
+    public static String position(String script, int index) {
+        int line = 1;
+        int start = 0;
+        for (int i = 0; i < index && i < script.length(); i++) {
+            if (script.charAt(i) == '\n') {
+                line++;
+                start = i + 1;
+            }
+        }
+        return line + ":" + (index - start + 1);
+    }
+
+    private static boolean isGenerated(String className) {
+        return className.equals("Main") || className.endsWith(".Main");
+    }
+
+    private static int compare(int line, int column, int otherLine, int otherColumn) {
+        return line != otherLine ? Integer.compare(line, otherLine) : Integer.compare(column, otherColumn);
+    }
+
+    private void sort() {
+        if (!sorted) {
+            mappings.sort(ORDER);
+            sorted = true;
+        }
+    }
+
+    /**
+     * Returns the index of the first mapping starting at or after the given
+     * position.
+     */
+    private int search(int line, int column) {
+        int low = 0;
+        int high = mappings.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Mapping mapping = mappings.get(middle);
+            if (compare(mapping.line, mapping.column, line, column) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Tracks the line and column of the generated text. Line separators are
+     * only written by {@link #newline(int)}, so every other append only moves
+     * the column.
+     */
+    static final class Recorder extends Sink {
+
+        private final Sink sink;
+        private int line = 1;
+        private int column = 0;
+
+        Recorder(Sink sink) {
+            this.sink = sink;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        int getColumn() {
+            return column;
+        }
+
+        @Override
+        public Sink append(char c) {
+            sink.append(c);
+            column++;
+            return this;
+        }
+
+        @Override
+        public Sink append(String string) {
+            sink.append(string);
+            column += string.length();
+            return this;
+        }
+
+        @Override
+        public Sink append(char[] chars, int offset, int length) {
+            sink.append(chars, offset, length);
+            column += length;
+            return this;
+        }
+
+        @Override
+        public Sink append(long value) {
+            sink.append(value);
+            column += value < 0 ? value == Long.MIN_VALUE ? 20 : digits(-value) + 1 : digits(value);
+            return this;
+        }
+
+        @Override
+        public Sink newline(int indent) {
+            sink.newline(indent);
+            line++;
+            column = 4 * indent;
+            return this;
+        }
+
+        @Override
+        public void flush() {
+            sink.flush();
+        }
+
+    }
+
+}
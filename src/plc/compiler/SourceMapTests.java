@@ -0,0 +1,109 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class SourceMapTests {
+
+    private static final String SCRIPT = String.join("\n",
+            "LET i : INTEGER = 0;",
+            "LET zero : INTEGER = 0;",
+            "WHILE i != 3 DO",
+            "    PRINT(i);",
+            "    i = i + 1;",
+            "END",
+            "PRINT(i / zero);"
+    );
+
+    @Test
+    void testParserPositions() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        Ast.Statement.While loop = (Ast.Statement.While) source.getStatements().get(2);
+        Assertions.assertEquals(SCRIPT.indexOf("WHILE"), loop.getIndex());
+        Assertions.assertEquals(SCRIPT.indexOf("i != 3"), loop.getCondition().getIndex());
+        Ast.Statement.Assignment increment = (Ast.Statement.Assignment) loop.getStatements().get(1);
+        Assertions.assertEquals(SCRIPT.indexOf("i = i + 1"), increment.getIndex());
+        Ast.Expression.Binary sum = (Ast.Expression.Binary) increment.getExpression();
+        Assertions.assertEquals(SCRIPT.indexOf("i + 1"), sum.getIndex());
+        Assertions.assertEquals(SCRIPT.indexOf("1;", SCRIPT.indexOf("i + 1")), sum.getRight().getIndex());
+    }
+
+    @Test
+    void testMappings() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        SourceMap map = new SourceMap();
+        CharSink sink = new CharSink();
+        new Generator(sink, null, new Generator.Options().setSourceMap(map)).visit(source);
+        String[] lines = sink.toString().split(System.lineSeparator());
+        int line = find(lines, "i = i + 1;");
+        Assertions.assertEquals(SCRIPT.indexOf("i = i + 1"), map.getIndex(line));
+        int column = lines[line - 1].indexOf("1;");
+        Assertions.assertEquals(SCRIPT.indexOf("1;", SCRIPT.indexOf("i + 1")), map.getIndex(line, column));
+        Assertions.assertEquals(SCRIPT.indexOf("WHILE"), map.getIndex(find(lines, "}")));
+        Assertions.assertEquals(-1, map.getIndex(1));
+        List<SourceMap.Mapping> mappings = map.getMappings();
+        for (int i = 1; i < mappings.size(); i++) {
+            Assertions.assertTrue(mappings.get(i - 1).getLine() <= mappings.get(i).getLine());
+        }
+    }
+
+    @Test
+    void testStackTrace() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        SourceMap map = new SourceMap();
+        CharSink sink = new CharSink();
+        Generator.Options options = new Generator.Options().setBuiltins(Builtins.standard()).setSourceMap(map);
+        new Generator(sink, TypeSpecializer.analyze(source), options).visit(source);
+        Class<?> main = new InProcessCompiler().compile(sink.toString());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(bytes));
+        ArithmeticException exception;
+        try {
+            exception = Assertions.assertThrows(ArithmeticException.class, () -> InProcessCompiler.run(main));
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+        Assertions.assertEquals(String.join(System.lineSeparator(), "0", "1", "2", ""), bytes.toString());
+        StackTraceElement frame = null;
+        for (StackTraceElement element : exception.getStackTrace()) {
+            if (element.getClassName().endsWith("Main")) {
+                frame = element;
+                break;
+            }
+        }
+        Assertions.assertNotNull(frame);
+        Assertions.assertEquals(SCRIPT.indexOf("PRINT(i / zero)"), map.getIndex(frame));
+        Assertions.assertEquals("\tat " + frame + " [script 7:1]", map.translate("\tat " + frame, SCRIPT));
+    }
+
+    @Test
+    void testTranslate() {
+        Ast.Source source = (Ast.Source) Parser.parse(Lexer.lex(SCRIPT));
+        SourceMap map = new SourceMap();
+        CharSink sink = new CharSink();
+        new Generator(sink, null, new Generator.Options().setSourceMap(map).setCompact(true)).visit(source);
+        int line = find(sink.toString().split(System.lineSeparator()), "PRINT(i);");
+        String trace = String.join("\n",
+                "Main.main(String[]) line: " + line,
+                "java.lang.Thread.run() line: 833",
+                "script3.Main.main(Main.java:" + line + ")");
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "Main.main(String[]) line: " + line + " [script 4:5]",
+                "java.lang.Thread.run() line: 833",
+                "script3.Main.main(Main.java:" + line + ") [script 4:5]"), map.translate(trace, SCRIPT));
+    }
+
+    private static int find(String[] lines, String text) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().equals(text)) {
+                return i + 1;
+            }
+        }
+        throw new AssertionError(text);
+    }
+
+}
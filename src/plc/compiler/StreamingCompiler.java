@@ -0,0 +1,58 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Translates a script to Java one top-level statement at a time. The lexer
+ * reads the input in chunks, the parser only holds the tokens of the current
+ * statement, and each statement is written by the {@link Generator} as soon
+ * as it is parsed and then dropped, so memory use is bounded by the largest
+ * statement rather than the size of the script.
+ *
+ * The output is the same as generating the whole source without a
+ * {@link TypeSpecializer}, since specialization, literal pooling and
+ * outlining all need the whole program.
+ */
+public final class StreamingCompiler {
+
+    private StreamingCompiler() {}
+
+    /**
+     * Translates the input, writing the generated class to the sink. The
+     * sink is not flushed.
+     */
+    public static void compile(Reader input, Sink output, Generator.Options options) throws ParseException {
+        Parser parser = new Parser(new Lexer(input));
+        Generator generator = new Generator(output, null, options);
+        generator.visitPrologue();
+        for (Ast.Statement statement = parser.parseNextStatement(); statement != null;
+                statement = parser.parseNextStatement()) {
+            generator.visitMain(statement);
+        }
+        generator.visitEpilogue();
+    }
+
+    /**
+     * Translates a UTF-8 script file, writing the generated class to the
+     * output file through a {@link ChannelSink}.
+     */
+    public static void compile(Path input, Path output, Generator.Options options) throws ParseException {
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelSink sink = new ChannelSink(channel);
+            compile(reader, sink, options);
+            sink.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamingCompilerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "LET i : INTEGER = 0;",
+            "LET sum : DECIMAL = 0.0;",
+            "WHILE i != 100 DO",
+            "    IF (i / 2) * 2 == i THEN",
+            "        sum = sum + (i * 1.5);",
+            "    ELSE",
+            "        PRINT(\"odd \u00e9\", i);",
+            "    END",
+            "    i = i + 1;",
+            "END",
+            "PRINT(sum);"
+    );
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testSameOutput(boolean builtins) {
+        Generator.Options options = new Generator.Options();
+        if (builtins) {
+            options.setBuiltins(Builtins.standard());
+        }
+        for (String program : new String[] {PROGRAM, "", "PRINT(1);"}) {
+            CharSink expected = new CharSink();
+            new Generator(expected, null, options).visit(Parser.parse(Lexer.lex(program)));
+            CharSink actual = new CharSink();
+            StreamingCompiler.compile(new StringReader(program), actual, options);
+            Assertions.assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    void testSmallReads() {
+        StringBuilder program = new StringBuilder(PROGRAM);
+        program.append("\nPRINT(\"");
+        for (int i = 0; i < 10000; i++) {
+            program.append((char) ('a' + i % 26));
+        }
+        program.append("\");");
+        List<Token> tokens = new ArrayList<>();
+        Lexer lexer = new Lexer(new SlowReader(program.toString()));
+        for (Token token = lexer.next(); token != null; token = lexer.next()) {
+            tokens.add(token);
+        }
+        Assertions.assertEquals(Lexer.lex(program.toString()), tokens);
+    }
+
+    @Test
+    void testLargeLiteral() {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < 1 << 22; i++) {
+            literal.append((char) ('a' + i % 26));
+        }
+        literal.append('"');
+        Lexer lexer = new Lexer(new StringReader("PRINT(" + literal + ");"));
+        Assertions.assertEquals("PRINT", lexer.next().getLiteral());
+        Assertions.assertEquals("(", lexer.next().getLiteral());
+        Token token = lexer.next();
+        Assertions.assertEquals(Token.Type.STRING, token.getType());
+        Assertions.assertEquals(literal.toString(), token.getLiteral());
+        Assertions.assertEquals(6, token.getIndex());
+        Assertions.assertEquals(")", lexer.next().getLiteral());
+    }
+
+    @Test
+    void testFiles(@TempDir Path directory) throws IOException {
+        Path input = directory.resolve("script.plc");
+        Path output = directory.resolve("Main.java");
+        Files.write(input, PROGRAM.getBytes(StandardCharsets.UTF_8));
+        StreamingCompiler.compile(input, output, new Generator.Options());
+        CharSink expected = new CharSink();
+        new Generator(expected).visit(Parser.parse(Lexer.lex(PROGRAM)));
+        Assertions.assertEquals(expected.toString(), new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(ParseException.class, () -> StreamingCompiler.compile(
+                new StringReader("PRINT(1); LET x = 1;"), new CharSink(), new Generator.Options()));
+        Assertions.assertThrows(ParseException.class, () -> StreamingCompiler.compile(
+                new StringReader("PRINT(\"unterminated);"), new CharSink(), new Generator.Options()));
+    }
+
+    /**
+     * Returns at most three characters per read, so tokens span many chunks.
+     */
+    private static final class SlowReader extends Reader {
+
+        private final StringReader reader;
+
+        private SlowReader(String input) {
+            this.reader = new StringReader(input);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, 3));
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for passes that rewrite the AST. Every method rebuilds its node
+ * from the transformed children, so a subclass only needs to override the
+ * nodes it actually changes.
+ *
+ * Statements may be removed or expanded: when visiting a statement returns
+ * {@code null} it is dropped from the enclosing list, and when it returns an
+ * {@link Ast.Source} its statements are spliced in its place. See
+ * {@link #visitStatements(List)}.
+ */
+public abstract class Transformer implements Ast.Visitor<Ast> {
+
+    /**
+     * Transforms each statement in the list, dropping statements that
+     * transform to {@code null} and splicing in the contents of statements
+     * that transform to an {@link Ast.Source}.
+     */
+    protected List<Ast.Statement> visitStatements(List<Ast.Statement> statements) {
+        List<Ast.Statement> result = new ArrayList<>();
+        for (Ast.Statement statement : statements) {
+            Ast transformed = visit(statement);
+            if (transformed instanceof Ast.Source) {
+                result.addAll(((Ast.Source) transformed).getStatements());
+            } else if (transformed != null) {
+                result.add((Ast.Statement) transformed);
+            }
+        }
+        return result;
+    }
+
+    protected Ast.Expression visitExpression(Ast.Expression expression) {
+        return (Ast.Expression) visit(expression);
+    }
+
+    /**
+     * Transforms a node, giving a rebuilt node the position of the original.
+     */
+    @Override
+    public Ast visit(Ast ast) {
+        Ast result = Ast.Visitor.super.visit(ast);
+        if (result != null && result != ast && result.getIndex() < 0) {
+            result.setIndex(ast.getIndex());
+        }
+        return result;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        return new Ast.Source(visitStatements(ast.getStatements()));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Expression ast) {
+        return new Ast.Statement.Expression(visitExpression(ast.getExpression()));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Declaration ast) {
+        Optional<Ast.Expression> value = ast.getValue().map(this::visitExpression);
+        return new Ast.Statement.Declaration(ast.getName(), ast.getType(), value);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Assignment ast) {
+        return new Ast.Statement.Assignment(ast.getName(), visitExpression(ast.getExpression()));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        return new Ast.Statement.If(visitExpression(ast.getCondition()),
+                visitStatements(ast.getThenStatements()),
+                visitStatements(ast.getElseStatements()));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        return new Ast.Statement.While(visitExpression(ast.getCondition()),
+                visitStatements(ast.getStatements()));
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        return new Ast.Expression.Group(visitExpression(ast.getExpression()));
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        return new Ast.Expression.Binary(ast.getOperator(),
+                visitExpression(ast.getLeft()),
+                visitExpression(ast.getRight()));
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Variable ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        List<Ast.Expression> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments()) {
+            arguments.add(visitExpression(argument));
+        }
+        return new Ast.Expression.Function(ast.getName(), arguments);
+    }
+
+}
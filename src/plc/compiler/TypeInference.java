@@ -0,0 +1,111 @@
+package plc.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Infers the source type ({@code INTEGER}, {@code DECIMAL}, {@code STRING} or
+ * {@code BOOLEAN}) of an expression, returning {@code null} if the type cannot
+ * be determined. Variable types come from their declarations and function
+ * types from a table of known functions; both are supplied by the caller,
+ * which is responsible for scoping (or can use a {@link Resolver}).
+ */
+public final class TypeInference implements Ast.Visitor<String> {
+
+    private final Function<Ast.Expression.Variable, String> variables;
+    private final Map<String, String> functions;
+
+    public TypeInference(Map<String, String> variables, Map<String, String> functions) {
+        this.variables = variable -> variables.get(variable.getName());
+        this.functions = functions;
+    }
+
+    public TypeInference(Resolver resolver, Map<String, String> functions) {
+        this.variables = variable -> resolver.getDeclaration(variable).getType();
+        this.functions = functions;
+    }
+
+    /**
+     * Returns {@code true} if the type is {@code INTEGER} or {@code DECIMAL}.
+     */
+    public static boolean isNumeric(String type) {
+        return "INTEGER".equals(type) || "DECIMAL".equals(type);
+    }
+
+    @Override
+    public String visit(Ast.Source ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Statement.Expression ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Statement.Declaration ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Statement.Assignment ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Statement.If ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Statement.While ast) {
+        throw new AssertionError("Types are only inferred for expressions.");
+    }
+
+    @Override
+    public String visit(Ast.Expression.Literal ast) {
+        if (ast.getValue() instanceof Boolean) {
+            return "BOOLEAN";
+        } else if (ast.getValue() instanceof BigInteger) {
+            return "INTEGER";
+        } else if (ast.getValue() instanceof BigDecimal) {
+            return "DECIMAL";
+        } else if (ast.getValue() instanceof String) {
+            return "STRING";
+        }
+        return null;
+    }
+
+    @Override
+    public String visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public String visit(Ast.Expression.Binary ast) {
+        if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+            return "BOOLEAN";
+        }
+        String left = visit(ast.getLeft());
+        String right = visit(ast.getRight());
+        if (ast.getOperator().equals("+") && ("STRING".equals(left) || "STRING".equals(right))) {
+            return "STRING";
+        } else if (!isNumeric(left) || !isNumeric(right)) {
+            return null;
+        }
+        return left.equals("DECIMAL") || right.equals("DECIMAL") ? "DECIMAL" : "INTEGER";
+    }
+
+    @Override
+    public String visit(Ast.Expression.Variable ast) {
+        return variables.apply(ast);
+    }
+
+    @Override
+    public String visit(Ast.Expression.Function ast) {
+        return functions.get(ast.getName());
+    }
+
+}
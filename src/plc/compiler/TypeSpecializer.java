@@ -0,0 +1,713 @@
+package plc.compiler;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Chooses the Java representation of every variable and expression so the
+ * {@link Generator} can emit primitives instead of arbitrary precision
+ * objects wherever that is safe.
+ *
+ * {@code INTEGER} values are represented as {@code long} when a range
+ * analysis proves they fit, and as {@link BigInteger} otherwise. The
+ * analysis is flow-insensitive: each variable's range is the union of the
+ * ranges of every value stored into it, computed to a fixpoint over the
+ * whole program and widened to unbounded if it keeps growing. Loop counters,
+ * variables only ever updated by {@code x = x + c} or {@code x = x - c} for
+ * a small constant, are assumed to run for at most {@link #MAX_ITERATIONS}
+ * updates; since that is an assumption rather than a proof, arithmetic
+ * depending on a counter is emitted with {@link Math#addExact} and friends,
+ * which throw instead of silently wrapping. There is no fallback to
+ * {@link BigInteger} when such a guard trips: the result is stored in a
+ * variable already declared {@code long}, which cannot hold it, so the
+ * {@link ArithmeticException} propagates. A counter stepping by at most
+ * {@link #MAX_STEP} needs more than {@code 2^52} updates to get there,
+ * months of running at a billion updates per second.
+ *
+ * Given a complete {@link Profile}, variables that range analysis cannot
+ * bound but that only ever held {@code long} values when profiled are
+ * speculated to stay within {@code long}. Since scripts read no input, a
+ * complete run of the same script stored every value any run will, so the
+ * speculation holds. Arithmetic on them is still guarded the same way, and
+ * stores converted from {@link BigInteger} are checked, so a profile that
+ * is wrong anyway, such as one edited by hand, makes the program throw an
+ * {@link ArithmeticException} rather than compute a wrong value.
+ *
+ * {@code DECIMAL} values stay {@link java.math.BigDecimal}: a {@code double}
+ * cannot represent most decimal literals exactly, nor division rounded at
+ * the left operand's scale (see {@link Values}).
+ */
+public final class TypeSpecializer implements Ast.Visitor<TypeSpecializer.Interval> {
+
+    public enum Representation {
+
+        LONG("long"),
+        BIG_INTEGER("java.math.BigInteger"),
+        BIG_DECIMAL("java.math.BigDecimal"),
+        STRING("String"),
+        BOOLEAN("boolean"),
+        UNKNOWN(null);
+
+        private final String javaType;
+
+        Representation(String javaType) {
+            this.javaType = javaType;
+        }
+
+        /**
+         * Returns the Java type name, or {@code null} for {@link #UNKNOWN}.
+         */
+        public String getJavaType() {
+            return javaType;
+        }
+
+    }
+
+    /**
+     * A range of integers, where a {@code null} bound is unbounded. The empty
+     * range (a variable that is never assigned) is represented by
+     * {@code null} itself.
+     */
+    static final class Interval {
+
+        static final Interval UNBOUNDED = new Interval(null, null, false);
+
+        private final BigInteger lower;
+        private final BigInteger upper;
+        private final boolean assumed;
+
+        Interval(BigInteger lower, BigInteger upper, boolean assumed) {
+            this.lower = lower;
+            this.upper = upper;
+            this.assumed = assumed;
+        }
+
+        BigInteger getLower() {
+            return lower;
+        }
+
+        BigInteger getUpper() {
+            return upper;
+        }
+
+        /**
+         * Returns {@code true} if the range relies on the loop counter
+         * assumption.
+         */
+        boolean isAssumed() {
+            return assumed;
+        }
+
+        boolean fitsLong() {
+            return lower != null && upper != null
+                    && lower.compareTo(LONG_MIN) >= 0 && upper.compareTo(LONG_MAX) <= 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Interval)) {
+                return false;
+            }
+            Interval other = (Interval) obj;
+            return Objects.equals(lower, other.lower) && Objects.equals(upper, other.upper)
+                    && assumed == other.assumed;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lower, upper, assumed);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (lower == null ? "-inf" : lower) + ", " + (upper == null ? "inf" : upper) + "]"
+                    + (assumed ? "?" : "");
+        }
+
+    }
+
+    /**
+     * The number of updates a loop counter is assumed never to exceed. At a
+     * billion updates per second this is over fifty days.
+     */
+    static final BigInteger MAX_ITERATIONS = BigInteger.ONE.shiftLeft(52);
+
+    /**
+     * The largest step of a loop counter, which keeps counters within
+     * {@code long} under the iteration assumption.
+     */
+    static final BigInteger MAX_STEP = BigInteger.valueOf(1024);
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /**
+     * The range of a variable speculated to fit in a {@code long}. Sums,
+     * differences and products involving it are assumed to fit as well,
+     * since they are computed with overflow checks.
+     */
+    static final Interval SPECULATED = new Interval(LONG_MIN, LONG_MAX, true);
+
+    /**
+     * The number of rounds after which growing ranges are widened.
+     */
+    private static final int WIDENING_ROUND = 3;
+
+    private final Resolver resolver;
+    private final TypeInference inference;
+    private final Map<Ast.Statement.Declaration, List<Ast.Expression>> stores = new IdentityHashMap<>();
+    private final Map<Ast.Statement.Declaration, BigInteger[]> counters = new IdentityHashMap<>();
+    private Map<Ast.Statement.Declaration, Interval> ranges = new IdentityHashMap<>();
+    private final Map<Ast.Expression, Interval> intervals = new IdentityHashMap<>();
+    private final Map<Ast, Representation> representations = new IdentityHashMap<>();
+    private final Map<Ast.Expression, Representation> operands = new IdentityHashMap<>();
+    private final Map<Ast.Expression, Representation> targets = new IdentityHashMap<>();
+    private final Set<Ast.Expression> guarded = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Ast.Statement.Declaration> speculated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private TypeSpecializer(Resolver resolver) {
+        this.resolver = resolver;
+        this.inference = new TypeInference(resolver, Collections.emptyMap());
+    }
+
+    /**
+     * Analyzes the given source, which must resolve (see {@link Resolver}).
+     */
+    public static TypeSpecializer analyze(Ast.Source source) throws ParseException {
+        return analyze(source, null);
+    }
+
+    /**
+     * Analyzes the given source, speculating on the variables that never
+     * overflowed a {@code long} in the profile, if there is one. A profile
+     * that does not {@link Profile#matches} the source, or is not
+     * {@link Profile#isComplete}, is ignored, since wrong speculation would
+     * make the program throw.
+     */
+    public static TypeSpecializer analyze(Ast.Source source, Profile profile) throws ParseException {
+        TypeSpecializer specializer = new TypeSpecializer(Resolver.resolve(source));
+        specializer.visit(source);
+        specializer.findCounters();
+        specializer.solve();
+        if (profile != null && profile.matches(source) && profile.isComplete() && specializer.speculate(profile)) {
+            specializer.ranges = new IdentityHashMap<>();
+            specializer.solve();
+        }
+        new Representations(specializer).visit(source);
+        return specializer;
+    }
+
+    /**
+     * Returns the representation of a declared variable or an expression.
+     */
+    public Representation getRepresentation(Ast ast) {
+        Representation representation = representations.get(ast);
+        if (representation == null) {
+            throw new IllegalArgumentException("Node was not analyzed: " + ast);
+        }
+        return representation;
+    }
+
+    /**
+     * Returns the representation both operands of a binary expression are
+     * converted to before the operator is applied. For string concatenation
+     * this is {@link Representation#STRING}, though operands are only
+     * converted as needed to format them.
+     */
+    public Representation getOperandRepresentation(Ast.Expression.Binary ast) {
+        return operands.get(ast);
+    }
+
+    /**
+     * Returns the representation the value of an expression must be
+     * converted to by its parent, which is its own representation if no
+     * conversion is needed.
+     */
+    public Representation getTarget(Ast.Expression ast) {
+        return targets.getOrDefault(ast, getRepresentation(ast));
+    }
+
+    /**
+     * Returns {@code true} if a {@code long} binary expression must check
+     * for overflow, since its range relies on the loop counter assumption.
+     */
+    public boolean isGuarded(Ast.Expression.Binary ast) {
+        return guarded.contains(ast);
+    }
+
+    /**
+     * Returns the range of an {@code INTEGER} variable, or {@code null} if it
+     * is never assigned.
+     */
+    Interval getRange(Ast.Statement.Declaration ast) {
+        return ranges.get(ast);
+    }
+
+    /**
+     * Returns the declaration a declaration, assignment or variable refers
+     * to.
+     */
+    Ast.Statement.Declaration getDeclaration(Ast ast) {
+        return resolver.getDeclaration(ast);
+    }
+
+    /**
+     * Selects the variables to speculate on: those whose range does not fit
+     * in a {@code long}, but whose stored values all did when profiled.
+     * Returns {@code true} if there are any.
+     */
+    private boolean speculate(Profile profile) {
+        for (Map.Entry<Ast.Statement.Declaration, Interval> entry : ranges.entrySet()) {
+            int index = entry.getKey().getIndex();
+            if (entry.getValue() != null && !entry.getValue().fitsLong() && index >= 0
+                    && profile.get(index, Profile.Kind.LONG_STORE) > 0
+                    && profile.get(index, Profile.Kind.OVERFLOW) == 0) {
+                speculated.add(entry.getKey());
+            }
+        }
+        return !speculated.isEmpty();
+    }
+
+    private void findCounters() {
+        for (Map.Entry<Ast.Statement.Declaration, List<Ast.Expression>> entry : stores.entrySet()) {
+            Ast.Statement.Declaration declaration = entry.getKey();
+            if (!declaration.getValue().isPresent()) {
+                continue;
+            }
+            BigInteger up = BigInteger.ZERO;
+            BigInteger down = BigInteger.ZERO;
+            boolean counter = true;
+            boolean updated = false;
+            for (Ast.Expression value : entry.getValue()) {
+                if (value == declaration.getValue().get()) {
+                    continue;
+                }
+                BigInteger step = step(declaration, value);
+                if (step == null) {
+                    counter = false;
+                    break;
+                }
+                updated = true;
+                up = up.max(step);
+                down = down.max(step.negate());
+            }
+            if (counter && updated) {
+                counters.put(declaration, new BigInteger[] {down, up});
+            }
+        }
+    }
+
+    /**
+     * Returns the step {@code c} if the value is {@code x + c}, {@code c + x}
+     * or {@code x - c} for the given variable and a small constant.
+     */
+    private BigInteger step(Ast.Statement.Declaration declaration, Ast.Expression value) {
+        if (!(value instanceof Ast.Expression.Binary)) {
+            return null;
+        }
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) value;
+        Ast.Expression variable = binary.getLeft();
+        Ast.Expression constant = binary.getRight();
+        if (binary.getOperator().equals("+") && constant instanceof Ast.Expression.Variable) {
+            variable = binary.getRight();
+            constant = binary.getLeft();
+        } else if (!binary.getOperator().equals("+") && !binary.getOperator().equals("-")) {
+            return null;
+        }
+        if (!(variable instanceof Ast.Expression.Variable)
+                || resolver.getDeclaration(variable) != declaration
+                || !(constant instanceof Ast.Expression.Literal)
+                || !(((Ast.Expression.Literal) constant).getValue() instanceof BigInteger)) {
+            return null;
+        }
+        BigInteger step = (BigInteger) ((Ast.Expression.Literal) constant).getValue();
+        if (step.abs().compareTo(MAX_STEP) > 0) {
+            return null;
+        }
+        return binary.getOperator().equals("-") ? step.negate() : step;
+    }
+
+    /**
+     * Computes variable ranges to a fixpoint, then records the range of every
+     * expression from the final one.
+     */
+    private void solve() {
+        for (int round = 0; ; round++) {
+            Map<Ast.Statement.Declaration, Interval> next = new IdentityHashMap<>();
+            boolean changed = false;
+            for (Map.Entry<Ast.Statement.Declaration, List<Ast.Expression>> entry : stores.entrySet()) {
+                Ast.Statement.Declaration declaration = entry.getKey();
+                Interval range = null;
+                for (Ast.Expression value : entry.getValue()) {
+                    if (!counters.containsKey(declaration) || value == declaration.getValue().get()) {
+                        range = join(range, visit(value));
+                    }
+                }
+                if (counters.containsKey(declaration) && range != null) {
+                    range = extend(range, counters.get(declaration));
+                }
+                if (speculated.contains(declaration)) {
+                    range = SPECULATED;
+                }
+                Interval previous = ranges.get(declaration);
+                if (!Objects.equals(range, previous)) {
+                    changed = true;
+                    if (round >= WIDENING_ROUND) {
+                        range = widen(previous, range);
+                    }
+                }
+                next.put(declaration, range);
+            }
+            ranges = next;
+            if (!changed) {
+                break;
+            }
+        }
+        intervals.clear();
+        for (List<Ast.Expression> values : stores.values()) {
+            values.forEach(this::visit);
+        }
+    }
+
+    private static Interval join(Interval left, Interval right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        BigInteger lower = left.lower == null || right.lower == null ? null : left.lower.min(right.lower);
+        BigInteger upper = left.upper == null || right.upper == null ? null : left.upper.max(right.upper);
+        return new Interval(lower, upper, left.assumed || right.assumed);
+    }
+
+    private static Interval widen(Interval previous, Interval next) {
+        if (previous == null) {
+            return next;
+        }
+        BigInteger lower = Objects.equals(previous.lower, next.lower) ? next.lower : null;
+        BigInteger upper = Objects.equals(previous.upper, next.upper) ? next.upper : null;
+        return new Interval(lower, upper, next.assumed);
+    }
+
+    private static Interval extend(Interval range, BigInteger[] steps) {
+        BigInteger lower = range.lower == null ? null : range.lower.subtract(steps[0].multiply(MAX_ITERATIONS));
+        BigInteger upper = range.upper == null ? null : range.upper.add(steps[1].multiply(MAX_ITERATIONS));
+        return new Interval(lower, upper, true);
+    }
+
+    private void store(Ast ast, Ast.Expression value) {
+        Ast.Statement.Declaration declaration = resolver.getDeclaration(ast);
+        if (declaration.getType().equals("INTEGER")) {
+            stores.computeIfAbsent(declaration, d -> new ArrayList<>()).add(value);
+        }
+    }
+
+    @Override
+    public Interval visit(Ast.Source ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Expression ast) {
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Declaration ast) {
+        if (ast.getType().equals("INTEGER")) {
+            stores.put(ast, new ArrayList<>());
+        }
+        ast.getValue().ifPresent(value -> store(ast, value));
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Assignment ast) {
+        store(ast, ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.If ast) {
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.While ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Literal ast) {
+        Interval interval = Interval.UNBOUNDED;
+        if (ast.getValue() instanceof BigInteger) {
+            BigInteger value = (BigInteger) ast.getValue();
+            interval = new Interval(value, value, false);
+        }
+        intervals.put(ast, interval);
+        return interval;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Group ast) {
+        Interval interval = visit(ast.getExpression());
+        intervals.put(ast, interval);
+        return interval;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Binary ast) {
+        Interval left = visit(ast.getLeft());
+        Interval right = visit(ast.getRight());
+        Interval interval = Interval.UNBOUNDED;
+        if ("INTEGER".equals(inference.visit(ast))) {
+            interval = arithmetic(ast.getOperator(), left, right);
+        }
+        intervals.put(ast, interval);
+        return interval;
+    }
+
+    private static Interval arithmetic(String operator, Interval left, Interval right) {
+        Interval interval = bounds(operator, left, right);
+        if (interval != null && !interval.fitsLong() && !operator.equals("/")
+                && (SPECULATED.equals(left) || SPECULATED.equals(right))
+                && left.fitsLong() && right.fitsLong()) {
+            return SPECULATED;
+        }
+        return interval;
+    }
+
+    private static Interval bounds(String operator, Interval left, Interval right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        boolean assumed = left.assumed || right.assumed;
+        switch (operator) {
+            case "+":
+                return new Interval(add(left.lower, right.lower), add(left.upper, right.upper), assumed);
+            case "-":
+                return new Interval(subtract(left.lower, right.upper), subtract(left.upper, right.lower), assumed);
+            case "*":
+                if (left.lower == null || left.upper == null || right.lower == null || right.upper == null) {
+                    return new Interval(null, null, assumed);
+                }
+                BigInteger[] products = {
+                        left.lower.multiply(right.lower), left.lower.multiply(right.upper),
+                        left.upper.multiply(right.lower), left.upper.multiply(right.upper)
+                };
+                BigInteger lower = products[0];
+                BigInteger upper = products[0];
+                for (BigInteger product : products) {
+                    lower = lower.min(product);
+                    upper = upper.max(product);
+                }
+                return new Interval(lower, upper, assumed);
+            case "/":
+                //a truncating quotient is never larger in magnitude than the dividend
+                if (left.lower == null || left.upper == null) {
+                    return new Interval(null, null, assumed);
+                }
+                BigInteger magnitude = left.lower.abs().max(left.upper.abs());
+                return new Interval(magnitude.negate(), magnitude, assumed);
+            default:
+                throw new AssertionError("Unknown operator " + operator + ".");
+        }
+    }
+
+    private static BigInteger add(BigInteger left, BigInteger right) {
+        return left == null || right == null ? null : left.add(right);
+    }
+
+    private static BigInteger subtract(BigInteger left, BigInteger right) {
+        return left == null || right == null ? null : left.subtract(right);
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Variable ast) {
+        Ast.Statement.Declaration declaration = resolver.getDeclaration(ast);
+        Interval interval = declaration.getType().equals("INTEGER") ? ranges.get(declaration) : Interval.UNBOUNDED;
+        intervals.put(ast, interval);
+        return interval;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        intervals.put(ast, Interval.UNBOUNDED);
+        return Interval.UNBOUNDED;
+    }
+
+    /**
+     * Assigns representations once ranges are known.
+     */
+    private static final class Representations implements Ast.Visitor<Representation> {
+
+        private final TypeSpecializer specializer;
+
+        private Representations(TypeSpecializer specializer) {
+            this.specializer = specializer;
+        }
+
+        private static boolean fitsLong(Interval interval) {
+            return interval == null || interval.fitsLong();
+        }
+
+        private Interval interval(Ast.Expression ast) {
+            Interval interval = specializer.intervals.get(ast);
+            if (interval == null && !specializer.intervals.containsKey(ast)) {
+                //expressions outside of stores, such as conditions
+                interval = specializer.visit(ast);
+            }
+            return interval;
+        }
+
+        private Representation record(Ast ast, Representation representation) {
+            specializer.representations.put(ast, representation);
+            return representation;
+        }
+
+        private void convert(Ast.Expression ast, Representation target) {
+            if (visit(ast) != target) {
+                specializer.targets.put(ast, target);
+            }
+        }
+
+        @Override
+        public Representation visit(Ast.Source ast) {
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Representation visit(Ast.Statement.Expression ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Representation visit(Ast.Statement.Declaration ast) {
+            Representation representation = type(ast.getType(), specializer.ranges.get(ast));
+            record(ast, representation);
+            ast.getValue().ifPresent(value -> convert(value, representation));
+            return null;
+        }
+
+        @Override
+        public Representation visit(Ast.Statement.Assignment ast) {
+            convert(ast.getExpression(), specializer.getRepresentation(specializer.resolver.getDeclaration(ast)));
+            return null;
+        }
+
+        @Override
+        public Representation visit(Ast.Statement.If ast) {
+            visit(ast.getCondition());
+            ast.getThenStatements().forEach(this::visit);
+            ast.getElseStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Representation visit(Ast.Statement.While ast) {
+            visit(ast.getCondition());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        private Representation type(String type, Interval interval) {
+            if (type == null) {
+                return Representation.UNKNOWN;
+            }
+            switch (type) {
+                case "INTEGER":
+                    return fitsLong(interval) ? Representation.LONG : Representation.BIG_INTEGER;
+                case "DECIMAL":
+                    return Representation.BIG_DECIMAL;
+                case "STRING":
+                    return Representation.STRING;
+                case "BOOLEAN":
+                    return Representation.BOOLEAN;
+                default:
+                    return Representation.UNKNOWN;
+            }
+        }
+
+        @Override
+        public Representation visit(Ast.Expression.Literal ast) {
+            return record(ast, type(specializer.inference.visit(ast), interval(ast)));
+        }
+
+        @Override
+        public Representation visit(Ast.Expression.Group ast) {
+            return record(ast, visit(ast.getExpression()));
+        }
+
+        @Override
+        public Representation visit(Ast.Expression.Binary ast) {
+            String leftType = specializer.inference.visit(ast.getLeft());
+            String rightType = specializer.inference.visit(ast.getRight());
+            String type = specializer.inference.visit(ast);
+            Interval interval = interval(ast);
+            Representation operand;
+            if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+                if (!Objects.equals(leftType, rightType) && TypeInference.isNumeric(leftType)
+                        && TypeInference.isNumeric(rightType)) {
+                    operand = Representation.BIG_DECIMAL;
+                } else if ("INTEGER".equals(leftType) && "INTEGER".equals(rightType)) {
+                    operand = fitsLong(interval(ast.getLeft())) && fitsLong(interval(ast.getRight()))
+                            ? Representation.LONG : Representation.BIG_INTEGER;
+                } else {
+                    operand = Objects.equals(leftType, rightType) ? type(leftType, null) : Representation.UNKNOWN;
+                }
+            } else if ("INTEGER".equals(type)) {
+                operand = fitsLong(interval) && fitsLong(interval(ast.getLeft())) && fitsLong(interval(ast.getRight()))
+                        ? Representation.LONG : Representation.BIG_INTEGER;
+                if (operand == Representation.LONG && interval != null && interval.isAssumed()) {
+                    specializer.guarded.add(ast);
+                }
+            } else {
+                operand = type(type, null);
+            }
+            specializer.operands.put(ast, operand);
+            if (operand == Representation.STRING && !ast.getOperator().equals("==") && !ast.getOperator().equals("!=")) {
+                //concatenation only needs decimals formatted
+                for (Ast.Expression expression : Arrays.asList(ast.getLeft(), ast.getRight())) {
+                    if (visit(expression) == Representation.BIG_DECIMAL) {
+                        specializer.targets.put(expression, Representation.STRING);
+                    }
+                }
+            } else if (operand == Representation.UNKNOWN) {
+                visit(ast.getLeft());
+                visit(ast.getRight());
+            } else {
+                convert(ast.getLeft(), operand);
+                convert(ast.getRight(), operand);
+            }
+            if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+                return record(ast, Representation.BOOLEAN);
+            }
+            return record(ast, operand);
+        }
+
+        @Override
+        public Representation visit(Ast.Expression.Variable ast) {
+            return record(ast, specializer.getRepresentation(specializer.resolver.getDeclaration(ast)));
+        }
+
+        @Override
+        public Representation visit(Ast.Expression.Function ast) {
+            ast.getArguments().forEach(this::visit);
+            return record(ast, Representation.UNKNOWN);
+        }
+
+    }
+
+}
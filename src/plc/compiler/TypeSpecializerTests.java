@@ -0,0 +1,152 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+public class TypeSpecializerTests {
+
+    @Test
+    void testBoundedIsLong() {
+        Ast.Source source = parse("LET x : INTEGER = 3; LET y : INTEGER = x * 4; LET z : INTEGER = y - x;");
+        TypeSpecializer types = TypeSpecializer.analyze(source);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(source.getStatements().get(0)));
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(source.getStatements().get(1)));
+        Ast.Statement.Declaration y = (Ast.Statement.Declaration) source.getStatements().get(1);
+        Assertions.assertFalse(types.isGuarded((Ast.Expression.Binary) y.getValue().get()));
+    }
+
+    @Test
+    void testCounterIsGuardedLong() {
+        Ast.Source source = parse("LET i : INTEGER = 0; WHILE i != 10 DO i = i + 1; END");
+        TypeSpecializer types = TypeSpecializer.analyze(source);
+        Ast.Statement.Declaration i = (Ast.Statement.Declaration) source.getStatements().get(0);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(i));
+        Assertions.assertTrue(types.getRange(i).isAssumed());
+        Ast.Statement.Assignment increment = (Ast.Statement.Assignment)
+                ((Ast.Statement.While) source.getStatements().get(1)).getStatements().get(0);
+        Assertions.assertTrue(types.isGuarded((Ast.Expression.Binary) increment.getExpression()));
+    }
+
+    @Test
+    void testUnboundedIsBigInteger() {
+        Ast.Source source = parse(String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET sum : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    sum = sum + i * i;",
+                "    i = i + 1;",
+                "END"
+        ));
+        TypeSpecializer types = TypeSpecializer.analyze(source);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(source.getStatements().get(0)));
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_INTEGER, types.getRepresentation(source.getStatements().get(1)));
+        Ast.Statement.Assignment sum = (Ast.Statement.Assignment)
+                ((Ast.Statement.While) source.getStatements().get(2)).getStatements().get(0);
+        Ast.Expression.Binary square = (Ast.Expression.Binary) ((Ast.Expression.Binary) sum.getExpression()).getRight();
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_INTEGER, types.getOperandRepresentation(square));
+    }
+
+    @Test
+    void testSpeculated() {
+        String input = "LET i : INTEGER = 0; LET sum : INTEGER = 0; WHILE i != 10 DO sum = sum + i; i = i + 1; END";
+        Ast.Source source = parse(input);
+        Ast.Statement sum = source.getStatements().get(1);
+        Profile profile = new Profile(Profile.checksum(source), true);
+        profile.add(input.indexOf("LET sum"), Profile.Kind.LONG_STORE, 11);
+        TypeSpecializer types = TypeSpecializer.analyze(source, profile);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, types.getRepresentation(sum));
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment)
+                ((Ast.Statement.While) source.getStatements().get(2)).getStatements().get(0);
+        Assertions.assertTrue(types.isGuarded((Ast.Expression.Binary) assignment.getExpression()));
+
+        //a profile of a different script is ignored
+        Ast.Source other = parse(" " + input);
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_INTEGER,
+                TypeSpecializer.analyze(other, profile).getRepresentation(other.getStatements().get(1)));
+
+        profile.add(input.indexOf("LET sum"), Profile.Kind.OVERFLOW, 1);
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_INTEGER,
+                TypeSpecializer.analyze(source, profile).getRepresentation(sum));
+    }
+
+    @Test
+    void testDecimal() {
+        Ast.Source source = parse("LET x : DECIMAL = 1.5; LET y : DECIMAL = x * 2;");
+        TypeSpecializer types = TypeSpecializer.analyze(source);
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_DECIMAL, types.getRepresentation(source.getStatements().get(1)));
+        Ast.Expression.Binary product = (Ast.Expression.Binary)
+                ((Ast.Statement.Declaration) source.getStatements().get(1)).getValue().get();
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_DECIMAL, types.getTarget(product.getRight()));
+    }
+
+    @Test
+    void testGeneratedSourceCompiles() {
+        Ast.Source source = parse(String.join("\n",
+                "LET i : INTEGER = 0;",
+                "LET sum : INTEGER = 0;",
+                "LET half : INTEGER = 0;",
+                "LET average : DECIMAL = 0.0;",
+                "LET text : STRING = \"\";",
+                "WHILE i != 100 DO",
+                "    sum = sum + i * i;",
+                "    half = i / 2;",
+                "    IF half * 2 == i THEN",
+                "        average = (average + i) / 2;",
+                "    END",
+                "    i = i + 1;",
+                "END",
+                "text = \"sum=\" + (sum + (\", average=\" + average));"
+        ));
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        new Generator(out, TypeSpecializer.analyze(source)).visit(source);
+        out.flush();
+        Assertions.assertTrue(writer.toString().contains("long i = 0L;"), writer.toString());
+        InProcessCompiler.run(new InProcessCompiler().compile(writer.toString()));
+    }
+
+    @Test
+    void testIncompleteProfile() {
+        String input = "LET i : INTEGER = 0; LET product : INTEGER = 1; WHILE i != 70 DO product = product * 2; i = i + 1; END PRINT(product);";
+        Ast.Source source = parse(input);
+        //a run stopped after 40 iterations, which never saw the overflow
+        Profile profile = new Profile(Profile.checksum(source), false);
+        profile.add(input.indexOf("LET product"), Profile.Kind.LONG_STORE, 41);
+        TypeSpecializer types = TypeSpecializer.analyze(source, profile);
+        Assertions.assertEquals(TypeSpecializer.Representation.BIG_INTEGER, types.getRepresentation(source.getStatements().get(1)));
+        Assertions.assertEquals("1180591620717411303424" + System.lineSeparator(), run(source, types, profile));
+
+        Profile complete = new Profile(Profile.checksum(source), true);
+        complete.add(input.indexOf("LET product"), Profile.Kind.LONG_STORE, 41);
+        TypeSpecializer speculated = TypeSpecializer.analyze(source, complete);
+        Assertions.assertEquals(TypeSpecializer.Representation.LONG, speculated.getRepresentation(source.getStatements().get(1)));
+        Assertions.assertThrows(ArithmeticException.class, () -> run(source, speculated, complete));
+    }
+
+    private static String run(Ast.Source source, TypeSpecializer types, Profile profile) {
+        CharSink sink = new CharSink();
+        new Generator(sink, types, new Generator.Options().setBuiltins(Builtins.standard()).setProfile(profile)).visit(source);
+        Class<?> main = new InProcessCompiler().compile(sink.toString());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(output));
+        try {
+            InProcessCompiler.run(main);
+            ScriptRuntime.flush();
+            return output.toString();
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+    }
+
+    private static Ast.Source parse(String input) {
+        List<Token> tokens = Lexer.lex(input);
+        return (Ast.Source) Parser.parse(tokens);
+    }
+
+}
@@ -0,0 +1,173 @@
+package plc.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * The runtime semantics of values in the language, shared by every execution
+ * engine. Values are {@link BigInteger} ({@code INTEGER}), {@link BigDecimal}
+ * ({@code DECIMAL}), {@link String} ({@code STRING}) and {@link Boolean}
+ * ({@code BOOLEAN}).
+ *
+ * Arithmetic on two integers produces an integer (with truncating division),
+ * and arithmetic involving a decimal produces a decimal, rounding division
+ * half-even to the scale of the left operand. {@code +} concatenates if either
+ * operand is a string. Numbers compare equal by value regardless of type or
+ * scale.
+ */
+public final class Values {
+
+    private Values() {}
+
+    /**
+     * Evaluates a binary operator, throwing an {@link EvaluationException} if
+     * the operands are not supported.
+     */
+    public static Object binary(String operator, Object left, Object right) {
+        switch (operator) {
+            case "==":
+                return equals(left, right);
+            case "!=":
+                return !equals(left, right);
+            case "+":
+                if (left instanceof String || right instanceof String) {
+                    return format(left) + format(right);
+                }
+                break;
+        }
+        if (left instanceof BigInteger && right instanceof BigInteger) {
+            return integer(operator, (BigInteger) left, (BigInteger) right);
+        } else if (isNumber(left) && isNumber(right)) {
+            return decimal(operator, toDecimal(left), toDecimal(right));
+        }
+        throw new EvaluationException("Unsupported operands for " + operator + ": " + left + ", " + right + ".");
+    }
+
+    public static BigInteger integer(String operator, BigInteger left, BigInteger right) {
+        switch (operator) {
+            case "+":
+                return left.add(right);
+            case "-":
+                return left.subtract(right);
+            case "*":
+                return left.multiply(right);
+            case "/":
+                if (right.signum() == 0) {
+                    throw new EvaluationException("Division by zero.");
+                }
+                return left.divide(right);
+            default:
+                throw new EvaluationException("Unknown operator " + operator + ".");
+        }
+    }
+
+    public static BigDecimal decimal(String operator, BigDecimal left, BigDecimal right) {
+        switch (operator) {
+            case "+":
+                return left.add(right);
+            case "-":
+                return left.subtract(right);
+            case "*":
+                return left.multiply(right);
+            case "/":
+                if (right.signum() == 0) {
+                    throw new EvaluationException("Division by zero.");
+                }
+                return left.divide(right, RoundingMode.HALF_EVEN);
+            default:
+                throw new EvaluationException("Unknown operator " + operator + ".");
+        }
+    }
+
+    public static boolean equals(Object left, Object right) {
+        if (isNumber(left) && isNumber(right)) {
+            return toDecimal(left).compareTo(toDecimal(right)) == 0;
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * Returns the value of a condition, which must be a boolean.
+     */
+    public static boolean requireBoolean(Object value) {
+        if (!(value instanceof Boolean)) {
+            throw new EvaluationException("Expected a BOOLEAN condition, received " + value + ".");
+        }
+        return (Boolean) value;
+    }
+
+    /**
+     * Returns the value of a variable, throwing if it has not been initialized
+     * (represented as {@code null}).
+     */
+    public static Object requireInitialized(Object value, String name) {
+        if (value == null) {
+            throw uninitialized(name);
+        }
+        return value;
+    }
+
+    /**
+     * Throws for a read of a variable that has not been initialized. The
+     * result type lets generated code use this in place of a value.
+     */
+    public static <T> T readUninitialized(String name) {
+        throw uninitialized(name);
+    }
+
+    private static EvaluationException uninitialized(String name) {
+        return new EvaluationException("Variable " + name + " is not initialized.");
+    }
+
+    /**
+     * Converts a value for storage in a variable of the given type, widening
+     * integers to decimals and rejecting any other mismatch.
+     */
+    public static Object coerce(String type, Object value) {
+        switch (type) {
+            case "INTEGER":
+                if (value instanceof BigInteger) {
+                    return value;
+                }
+                break;
+            case "DECIMAL":
+                if (isNumber(value)) {
+                    return toDecimal(value);
+                }
+                break;
+            case "STRING":
+                if (value instanceof String) {
+                    return value;
+                }
+                break;
+            case "BOOLEAN":
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                break;
+            default:
+                return value;
+        }
+        throw new EvaluationException("Cannot store " + value + " in a variable of type " + type + ".");
+    }
+
+    /**
+     * Returns the text printed for a value.
+     */
+    public static String format(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return String.valueOf(value);
+    }
+
+    private static boolean isNumber(Object value) {
+        return value instanceof BigInteger || value instanceof BigDecimal;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        return value instanceof BigInteger ? new BigDecimal((BigInteger) value) : (BigDecimal) value;
+    }
+
+}
@@ -0,0 +1,114 @@
+package plc.compiler;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the variables read and written by a piece of the AST. Writes are
+ * both {@link Ast.Statement.Assignment}s and {@link Ast.Statement.Declaration}s,
+ * including those nested inside {@code IF} and {@code WHILE} statements.
+ */
+public final class Variables implements Ast.Visitor<Void> {
+
+    private final Set<String> reads = new HashSet<>();
+    private final Set<String> writes = new HashSet<>();
+
+    /**
+     * Returns the variables read and written by the given AST.
+     */
+    public static Variables of(Ast ast) {
+        Variables variables = new Variables();
+        variables.visit(ast);
+        return variables;
+    }
+
+    /**
+     * Returns the variables read and written by the given statements.
+     */
+    public static Variables of(List<Ast.Statement> statements) {
+        Variables variables = new Variables();
+        statements.forEach(variables::visit);
+        return variables;
+    }
+
+    public Set<String> getReads() {
+        return reads;
+    }
+
+    public Set<String> getWrites() {
+        return writes;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        writes.add(ast.getName());
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        writes.add(ast.getName());
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        reads.add(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+}
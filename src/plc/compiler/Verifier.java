@@ -0,0 +1,151 @@
+package plc.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that an AST is well formed, which is used to catch bugs in passes
+ * rather than errors in the program. Every node must have its children,
+ * operators and literals must be ones the parser can produce, and compiler
+ * temporaries (names starting with {@code $}, see {@link FreshNames}) must be
+ * declared exactly once in scope before they are used.
+ */
+public final class Verifier implements Ast.Visitor<Void> {
+
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList("==", "!=", "+", "-", "*", "/"));
+
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+
+    /**
+     * Verifies the given AST, throwing an {@link AssertionError} describing
+     * the first problem found.
+     */
+    public static void verify(Ast ast) {
+        new Verifier().visit(ast);
+    }
+
+    private void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private void visitStatements(List<Ast.Statement> statements) {
+        check(statements != null, "Missing statement list.");
+        scopes.push(new HashSet<>());
+        for (Ast.Statement statement : statements) {
+            check(statement != null, "Missing statement.");
+            visit(statement);
+        }
+        scopes.pop();
+    }
+
+    private void visitName(String name) {
+        check(name != null && !name.isEmpty(), "Missing variable name.");
+        if (name.startsWith("$")) {
+            check(scopes.stream().anyMatch(scope -> scope.contains(name)), "Temporary " + name + " used before it is declared.");
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        visitStatements(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        check(ast.getExpression() != null, "Missing expression.");
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        check(ast.getName() != null && !ast.getName().isEmpty(), "Missing variable name.");
+        check(ast.getType() != null && !ast.getType().isEmpty(), "Missing type for " + ast.getName() + ".");
+        check(ast.getValue() != null, "Missing optional value for " + ast.getName() + ".");
+        ast.getValue().ifPresent(this::visit);
+        if (ast.getName().startsWith("$")) {
+            check(scopes.stream().noneMatch(scope -> scope.contains(ast.getName())),
+                    "Temporary " + ast.getName() + " is declared twice.");
+        }
+        if (!scopes.isEmpty()) {
+            scopes.peek().add(ast.getName());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        visitName(ast.getName());
+        check(ast.getExpression() != null, "Missing expression.");
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        check(ast.getCondition() != null, "Missing condition.");
+        visit(ast.getCondition());
+        visitStatements(ast.getThenStatements());
+        visitStatements(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        check(ast.getCondition() != null, "Missing condition.");
+        visit(ast.getCondition());
+        visitStatements(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object value = ast.getValue();
+        check(value instanceof Boolean || value instanceof BigInteger || value instanceof BigDecimal
+                || value instanceof String, "Invalid literal " + value + ".");
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        check(ast.getExpression() != null, "Missing expression.");
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        check(OPERATORS.contains(ast.getOperator()), "Invalid operator " + ast.getOperator() + ".");
+        check(ast.getLeft() != null && ast.getRight() != null, "Missing operand.");
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        visitName(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        check(ast.getName() != null && !ast.getName().isEmpty(), "Missing function name.");
+        check(ast.getArguments() != null, "Missing arguments.");
+        for (Ast.Expression argument : ast.getArguments()) {
+            check(argument != null, "Missing argument.");
+            visit(argument);
+        }
+        return null;
+    }
+
+}
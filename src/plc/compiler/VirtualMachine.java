@@ -0,0 +1,127 @@
+package plc.compiler;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Executes {@link Bytecode} in a single dispatch loop over a flat register
+ * file. The semantics are the same as the {@link Interpreter}'s, see
+ * {@link Values}.
+ */
+public final class VirtualMachine {
+
+    private final Bytecode bytecode;
+    private final Function<List<Object>, Object>[] functions;
+
+    /**
+     * Creates a virtual machine for the given code, binding every function
+     * it calls from the registry. Functions that are not defined only fail
+     * if they are called.
+     */
+    @SuppressWarnings("unchecked")
+    public VirtualMachine(Bytecode bytecode, Functions registry) {
+        this.bytecode = bytecode;
+        this.functions = (Function<List<Object>, Object>[]) new Function<?, ?>[bytecode.getConstants().length];
+        int[] code = bytecode.getCode();
+        for (int pc = 0; pc < code.length; pc += Bytecode.length(code[pc])) {
+            if (code[pc] == Bytecode.CALL) {
+                int name = code[pc + 2];
+                try {
+                    functions[name] = registry.lookup((String) bytecode.getConstants()[name]);
+                } catch (EvaluationException ignored) {
+                    //reported if the call is executed
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the program from the start with a fresh register file.
+     */
+    public void run() {
+        int[] code = bytecode.getCode();
+        Object[] constants = bytecode.getConstants();
+        Object[] registers = new Object[bytecode.getRegisters()];
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Bytecode.LOADK:
+                    registers[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.MOVE:
+                    registers[code[pc + 1]] = registers[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Bytecode.CLEAR:
+                    registers[code[pc + 1]] = null;
+                    pc += 2;
+                    break;
+                case Bytecode.CHECK:
+                    if (registers[code[pc + 1]] == null) {
+                        throw new EvaluationException("Variable " + constants[code[pc + 2]] + " is not initialized.");
+                    }
+                    pc += 3;
+                    break;
+                case Bytecode.COERCE:
+                    registers[code[pc + 1]] = Values.coerce((String) constants[code[pc + 3]], registers[code[pc + 2]]);
+                    pc += 4;
+                    break;
+                case Bytecode.BINARY:
+                    registers[code[pc + 1]] = Values.binary((String) constants[code[pc + 4]],
+                            registers[code[pc + 2]], registers[code[pc + 3]]);
+                    pc += 5;
+                    break;
+                case Bytecode.IADD:
+                    registers[code[pc + 1]] = ((BigInteger) registers[code[pc + 2]]).add((BigInteger) registers[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Bytecode.ISUB:
+                    registers[code[pc + 1]] = ((BigInteger) registers[code[pc + 2]]).subtract((BigInteger) registers[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Bytecode.IMUL:
+                    registers[code[pc + 1]] = ((BigInteger) registers[code[pc + 2]]).multiply((BigInteger) registers[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Bytecode.IEQ:
+                    registers[code[pc + 1]] = registers[code[pc + 2]].equals(registers[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Bytecode.INE:
+                    registers[code[pc + 1]] = !registers[code[pc + 2]].equals(registers[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Bytecode.JMP:
+                    pc = code[pc + 1];
+                    break;
+                case Bytecode.JMPF:
+                    pc = Values.requireBoolean(registers[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    break;
+                case Bytecode.CALL:
+                    registers[code[pc + 1]] = call(code[pc + 2], registers, code[pc + 3], code[pc + 4]);
+                    pc += 5;
+                    break;
+                case Bytecode.HALT:
+                    return;
+                default:
+                    throw new AssertionError(code[pc]);
+            }
+        }
+    }
+
+    private Object call(int name, Object[] registers, int first, int count) {
+        Function<List<Object>, Object> function = functions[name];
+        if (function == null) {
+            throw new EvaluationException("Function " + bytecode.getConstants()[name] + " is not defined.");
+        }
+        List<Object> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(registers[first + i]);
+        }
+        return function.apply(arguments);
+    }
+
+}
@@ -0,0 +1,118 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+/**
+ * Checks that programs run on the virtual machine behave exactly like the
+ * {@link Interpreter} and like the Java source written by the
+ * {@link Generator}, compiled with javac.
+ */
+public class VirtualMachineTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testProgram(String name, String input) {
+        StringWriter expected = new StringWriter();
+        PrintWriter expectedOut = new PrintWriter(expected);
+        new Interpreter(expectedOut).visit(Parser.parse(Lexer.lex(input)));
+        expectedOut.flush();
+        Assertions.assertEquals(expected.toString(), run(input));
+    }
+
+    @ParameterizedTest
+    @MethodSource("testProgram")
+    void testGenerated(String name, String input) {
+        Class<?> main = new InProcessCompiler().compile((Ast.Source) Parser.parse(Lexer.lex(input)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScriptRuntime.setOutput(new PrintStream(bytes));
+        try {
+            InProcessCompiler.run(main);
+        } finally {
+            ScriptRuntime.setOutput(System.out);
+        }
+        Assertions.assertEquals(bytes.toString(), run(input));
+    }
+
+    private static Stream<Arguments> testProgram() {
+        return Stream.of(
+                Arguments.of("Print", "PRINT(\"Hello, World!\");"),
+                Arguments.of("Arithmetic", String.join("\n",
+                        "LET x : INTEGER = 7 / 2;",
+                        "LET y : DECIMAL = 1.00 / 4;",
+                        "LET z : DECIMAL = y * 3 + x;",
+                        "PRINT(x, y, z, \"x=\" + x, x == 3.0, y != 0.25);"
+                )),
+                Arguments.of("Uninitialized", String.join("\n",
+                        "LET x : INTEGER;",
+                        "x = 5;",
+                        "x = x * (x - 1);",
+                        "PRINT(x);"
+                )),
+                Arguments.of("Loop", String.join("\n",
+                        "LET i : INTEGER = 0;",
+                        "LET sum : INTEGER = 0;",
+                        "WHILE i != 100 DO",
+                        "    LET square : INTEGER = i * i;",
+                        "    IF (i / 2) * 2 == i THEN",
+                        "        sum = sum + square;",
+                        "    ELSE",
+                        "        sum = sum - i;",
+                        "    END",
+                        "    i = i + 1;",
+                        "END",
+                        "PRINT(sum, i);"
+                ))
+        );
+    }
+
+    @Test
+    void testDisassemble() {
+        Bytecode bytecode = BytecodeCompiler.compile((Ast.Source) Parser.parse(Lexer.lex(String.join("\n",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 3 DO",
+                "    i = i + 1;",
+                "END"
+        ))));
+        String expected = String.join(System.lineSeparator(),
+                "0000 LOADK  r0, k0 (0)",
+                "0003 LOADK  r1, k1 (3)",
+                "0006 INE    r2, r0, r1",
+                "0010 JMPF   r2, 22",
+                "0013 LOADK  r1, k2 (1)",
+                "0016 IADD   r0, r0, r1",
+                "0020 JMP    3",
+                "0022 HALT",
+                ""
+        );
+        Assertions.assertEquals(expected, bytecode.disassemble());
+    }
+
+    @Test
+    void testErrors() {
+        Assertions.assertThrows(ParseException.class, () -> run("PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("UNKNOWN();"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("LET x : INTEGER; PRINT(x);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("PRINT(1 / 0);"));
+        Assertions.assertThrows(EvaluationException.class, () -> run("WHILE 1 DO END"));
+    }
+
+    private static String run(String input) {
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        Bytecode bytecode = BytecodeCompiler.compile((Ast.Source) Parser.parse(Lexer.lex(input)));
+        new VirtualMachine(bytecode, new Functions(out)).run();
+        out.flush();
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,60 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Adapts a {@link Writer}, such as a {@link java.io.PrintWriter}, as a sink.
+ * Every call is passed straight through, so writers that lock or encode on
+ * each call should be wrapped in a buffer, or a {@link CharSink} used and
+ * written out at the end.
+ */
+public final class WriterSink extends Sink {
+
+    private final Writer writer;
+
+    public WriterSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public WriterSink append(char c) {
+        try {
+            writer.write(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public WriterSink append(String string) {
+        try {
+            writer.write(string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public WriterSink append(char[] chars, int offset, int length) {
+        try {
+            writer.write(chars, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}